@@ -37,6 +37,55 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// Implementations for newer runtimes; packed into META-INF/versions of the multi-release JAR
+val java17: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+}
+
+tasks.named<JavaCompile>(java17.compileJavaTaskName) {
+    javaCompiler.set(javaToolchains.compilerFor { languageVersion.set(JavaLanguageVersion.of(17)) })
+    options.release.set(17)
+}
+
+tasks.jar {
+    into("META-INF/versions/17") {
+        from(java17.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
+val java17Test by tasks.registering(Test::class) {
+    description = "Runs the tests against the Java 17 implementations of the multi-release JAR."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = java17.output + sourceSets.test.get().runtimeClasspath
+    javaLauncher.set(javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(17)) })
+}
+
+tasks.check {
+    dependsOn(java17Test)
+}
+
+val benchmark: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+tasks.register<JavaExec>("startupBenchmark") {
+    description = "Measures time-to-first-build() on cold JVMs (and on a native image given by -PnativeImage)."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("net.moznion.uribuildertiny.benchmark.StartupBenchmark")
+    findProperty("nativeImage")?.let { args(it) }
+}
+
+tasks.register<JavaExec>("beanBindingBenchmark") {
+    description = "Compares addQueryParameters(bean) with hand-written addQueryParameter calls."
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("net.moznion.uribuildertiny.benchmark.BeanBindingBenchmark")
+}
+
 spotless {
     java {
         target("**/*.java")
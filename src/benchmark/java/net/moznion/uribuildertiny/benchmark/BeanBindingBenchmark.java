@@ -0,0 +1,111 @@
+package net.moznion.uribuildertiny.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.moznion.uribuildertiny.URIBuilderTiny;
+
+/**
+ * Benchmark of {@link URIBuilderTiny#addQueryParameters(Object)} against hand-written {@link
+ * URIBuilderTiny#addQueryParameter(String, Object)} calls for the same bean.
+ *
+ * <p>Both variants add the properties of a bean to the same builder repeatedly, so that the time
+ * is spent on reading, encoding and putting the properties rather than on building. Each of them
+ * is warmed up first, and then the median time per operation of the measured rounds is reported.
+ *
+ * <pre>
+ * ./gradlew beanBindingBenchmark
+ * </pre>
+ */
+public class BeanBindingBenchmark {
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int ROUNDS = 10;
+  private static final int OPERATIONS = 200_000;
+  private static final String BASE = "https://example.com/search";
+
+  private static int sink;
+
+  public static void main(String[] args) {
+    final Request request = new Request("foo bar", 20, true, "c0ffee");
+
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      runBound(request);
+      runHandWritten(request);
+    }
+
+    final List<Long> boundNanos = new ArrayList<>();
+    final List<Long> handWrittenNanos = new ArrayList<>();
+    for (int i = 0; i < ROUNDS; i++) {
+      boundNanos.add(runBound(request));
+      handWrittenNanos.add(runHandWritten(request));
+    }
+
+    System.out.printf("addQueryParameters(bean): %.1f ns/op%n", median(boundNanos));
+    System.out.printf("addQueryParameter x4:     %.1f ns/op%n", median(handWrittenNanos));
+    if (sink == 42) {
+      System.out.println(); // keeps the results alive
+    }
+  }
+
+  private static long runBound(Request request) {
+    final URIBuilderTiny builder = new URIBuilderTiny(BASE);
+    final long begin = System.nanoTime();
+    for (int i = 0; i < OPERATIONS; i++) {
+      builder.addQueryParameters(request);
+    }
+    final long elapsed = System.nanoTime() - begin;
+    sink += builder.build().hashCode();
+    return elapsed;
+  }
+
+  private static long runHandWritten(Request request) {
+    final URIBuilderTiny builder = new URIBuilderTiny(BASE);
+    final long begin = System.nanoTime();
+    for (int i = 0; i < OPERATIONS; i++) {
+      builder
+          .addQueryParameter("query", request.getQuery())
+          .addQueryParameter("limit", request.getLimit())
+          .addQueryParameter("active", request.isActive())
+          .addQueryParameter("cursor", request.getCursor());
+    }
+    final long elapsed = System.nanoTime() - begin;
+    sink += builder.build().hashCode();
+    return elapsed;
+  }
+
+  private static double median(List<Long> nanos) {
+    final List<Long> sorted = new ArrayList<>(nanos);
+    Collections.sort(sorted);
+    return (double) sorted.get(sorted.size() / 2) / OPERATIONS;
+  }
+
+  public static class Request {
+    private final String query;
+    private final int limit;
+    private final boolean active;
+    private final String cursor;
+
+    Request(String query, int limit, boolean active, String cursor) {
+      this.query = query;
+      this.limit = limit;
+      this.active = active;
+      this.cursor = cursor;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    public int getLimit() {
+      return limit;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public String getCursor() {
+      return cursor;
+    }
+  }
+}
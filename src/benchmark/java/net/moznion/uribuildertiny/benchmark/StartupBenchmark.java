@@ -0,0 +1,108 @@
+package net.moznion.uribuildertiny.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.moznion.uribuildertiny.URIBuilderTiny;
+
+/**
+ * Benchmark of time-to-first-{@code build()}.
+ *
+ * <p>Without arguments, this launches cold JVMs repeatedly and reports the time which each of them
+ * took from the beginning of {@code main} until the first URI is built (including class loading
+ * and initialisation of this library) and the wall-clock time of the whole process. If a path to
+ * the native image of this class is given as an argument, that is measured as well.
+ *
+ * <pre>
+ * ./gradlew startupBenchmark
+ * native-image -cp build/classes/java/main:build/classes/java/benchmark \
+ *     net.moznion.uribuildertiny.benchmark.StartupBenchmark build/startup-benchmark
+ * ./gradlew startupBenchmark -PnativeImage=build/startup-benchmark
+ * </pre>
+ */
+public class StartupBenchmark {
+  private static final String CHILD_ARG = "--child";
+  private static final int ITERATIONS = 20;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && CHILD_ARG.equals(args[0])) {
+      runChild();
+      return;
+    }
+
+    final String javaCommand =
+        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    measure(
+        "JVM",
+        Arrays.asList(
+            javaCommand,
+            "-cp",
+            System.getProperty("java.class.path"),
+            StartupBenchmark.class.getName(),
+            CHILD_ARG));
+
+    if (args.length > 0) {
+      measure("native image", Arrays.asList(args[0], CHILD_ARG));
+    }
+  }
+
+  private static void runChild() {
+    final long begin = System.nanoTime();
+    final String built =
+        new URIBuilderTiny()
+            .setScheme("https")
+            .setHost("java.example.com")
+            .setPort(8080)
+            .setPaths("foo", "bar")
+            .addQueryParameter("hoge", "fuga")
+            .setFragment("frag")
+            .build()
+            .toString();
+    final long elapsed = System.nanoTime() - begin;
+
+    if (built.isEmpty()) {
+      throw new IllegalStateException("unreachable");
+    }
+    System.out.println(elapsed);
+  }
+
+  private static void measure(String label, List<String> command) throws Exception {
+    final List<Long> firstBuildNanos = new ArrayList<>();
+    final List<Long> processNanos = new ArrayList<>();
+
+    for (int i = 0; i < ITERATIONS; i++) {
+      final long begin = System.nanoTime();
+      final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      final String output;
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+        output = reader.readLine();
+      }
+      if (process.waitFor() != 0 || output == null) {
+        throw new IllegalStateException("failed to run: " + command + ": " + output);
+      }
+      processNanos.add(System.nanoTime() - begin);
+      firstBuildNanos.add(Long.parseLong(output.trim()));
+    }
+
+    System.out.printf(
+        "%s: time-to-first-build median %.3f ms (min %.3f ms), process median %.3f ms%n",
+        label, median(firstBuildNanos), min(firstBuildNanos), median(processNanos));
+  }
+
+  private static double median(List<Long> nanos) {
+    final List<Long> sorted = new ArrayList<>(nanos);
+    Collections.sort(sorted);
+    return sorted.get(sorted.size() / 2) / 1_000_000.0;
+  }
+
+  private static double min(List<Long> nanos) {
+    return Collections.min(nanos) / 1_000_000.0;
+  }
+}
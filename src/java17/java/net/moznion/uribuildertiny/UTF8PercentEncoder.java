@@ -0,0 +1,117 @@
+package net.moznion.uribuildertiny;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Percent-encoder for UTF-8 in the same manner as {@link java.net.URLEncoder}.
+ *
+ * <p>This is the implementation for Java 17 or later which is packed into {@code
+ * META-INF/versions/17} of the multi-release JAR. It relies on compact strings: {@link
+ * String#getBytes(java.nio.charset.Charset)} of a Latin-1 string is an intrinsified copy, and a
+ * string which is made from ASCII bytes by ISO-8859-1 is stored without decoding. So this works on
+ * bytes instead of chars and never goes through {@link StringBuilder}.
+ *
+ * <p>Runs of bytes which don't need escaping are found 8 bytes at a time (SWAR; SIMD within a
+ * register) and copied in bulk, so long values scale with memory bandwidth.
+ */
+final class UTF8PercentEncoder {
+  // bit masks of characters which are not encoded: "a-zA-Z0-9.-*_"
+  private static final long UNRESERVED_LOW =
+      (1L << '-') | (1L << '.') | (1L << '*') | (0x3FFL << '0');
+  private static final long UNRESERVED_HIGH =
+      (0x3FFFFFFL << ('A' - 64)) | (1L << ('_' - 64)) | (0x3FFFFFFL << ('a' - 64));
+
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  private UTF8PercentEncoder() {}
+
+  private static boolean isUnreserved(int b) {
+    if (b < 64) {
+      return (UNRESERVED_LOW & (1L << b)) != 0;
+    }
+    return b < 128 && (UNRESERVED_HIGH & (1L << (b - 64))) != 0;
+  }
+
+  static String encode(String input) {
+    // malformed surrogates are replaced with '?' by String#getBytes(); same as java.net.URLEncoder
+    final byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+    final int length = bytes.length;
+
+    int i = skipUnreserved(bytes, 0, length);
+    if (i == length) {
+      return input;
+    }
+
+    final byte[] encoded = new byte[i + (length - i) * 3];
+    System.arraycopy(bytes, 0, encoded, 0, i);
+    int pos = i;
+    while (i < length) {
+      final int b = bytes[i++] & 0xFF;
+      if (b == ' ') {
+        encoded[pos++] = '+';
+      } else {
+        encoded[pos++] = '%';
+        encoded[pos++] = HEX[b >> 4];
+        encoded[pos++] = HEX[b & 0x0F];
+      }
+
+      final int runEnd = skipUnreserved(bytes, i, length);
+      System.arraycopy(bytes, i, encoded, pos, runEnd - i);
+      pos += runEnd - i;
+      i = runEnd;
+    }
+    return new String(encoded, 0, pos, StandardCharsets.ISO_8859_1);
+  }
+
+  /** Returns the index of the first byte which needs escaping, or {@code length} if not found. */
+  private static int skipUnreserved(byte[] bytes, int from, int length) {
+    int i = from;
+    for (; i + Long.BYTES <= length; i += Long.BYTES) {
+      final long mask = reservedMask((long) LONGS.get(bytes, i));
+      if (mask != 0) {
+        return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+      }
+    }
+    while (i < length && isUnreserved(bytes[i] & 0xFF)) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the mask whose high bit of each byte is set if the corresponding byte of the word needs
+   * escaping.
+   */
+  private static long reservedMask(long word) {
+    // clear high bits to prevent carries between bytes; non-ASCII bytes are reserved anyway
+    final long x = word & ~HIGH_BITS;
+    final long unreserved =
+        inRange(x, '0', '9')
+            | inRange(x, 'A', 'Z')
+            | inRange(x, 'a', 'z')
+            | equalTo(x, '*')
+            | equalTo(x, '-')
+            | equalTo(x, '.')
+            | equalTo(x, '_');
+    return (~unreserved | word) & HIGH_BITS;
+  }
+
+  private static long inRange(long x, int lo, int hi) {
+    final long greaterThanOrEqualToLo = x + ONES * (0x80 - lo);
+    final long greaterThanHi = x + ONES * (0x7F - hi);
+    return greaterThanOrEqualToLo & ~greaterThanHi & HIGH_BITS;
+  }
+
+  private static long equalTo(long x, int c) {
+    final long notEqual = (x ^ (ONES * c)) + ONES * 0x7F;
+    return ~notEqual & HIGH_BITS;
+  }
+}
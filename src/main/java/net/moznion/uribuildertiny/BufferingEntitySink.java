@@ -0,0 +1,37 @@
+package net.moznion.uribuildertiny;
+
+/** Sink which buffers appended characters and encodes them at once on finishing. */
+class BufferingEntitySink implements EntitySink {
+  private final EntityURLEncoder entityURLEncoder;
+  private final StringBuilder out;
+  private final StringBuilder buffer;
+
+  BufferingEntitySink(EntityURLEncoder entityURLEncoder, StringBuilder out) {
+    this.entityURLEncoder = entityURLEncoder;
+    this.out = out;
+    buffer = new StringBuilder();
+  }
+
+  @Override
+  public EntitySink append(CharSequence csq) {
+    buffer.append(csq);
+    return this;
+  }
+
+  @Override
+  public EntitySink append(CharSequence csq, int start, int end) {
+    buffer.append(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public EntitySink append(char c) {
+    buffer.append(c);
+    return this;
+  }
+
+  @Override
+  public void finish() {
+    out.append(entityURLEncoder.encode(buffer));
+  }
+}
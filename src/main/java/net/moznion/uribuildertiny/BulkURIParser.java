@@ -0,0 +1,396 @@
+package net.moznion.uribuildertiny;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import lombok.NonNull;
+
+/**
+ * Parser of URIs in bulk; e.g. request URIs in access logs.
+ *
+ * <p>The input is ASCII bytes which contain a URI (or a path with query) per line; lines are
+ * terminated by LF or CRLF, and empty lines are skipped. Scheme, host, port, path segments, query
+ * parameters and fragment are found in a single scan and passed to a {@link URIVisitor} as offsets
+ * in the bytes. No object is created per URI, and no component is copied or decoded.
+ *
+ * <p>A file is mapped to memory by windows. To parse a file in parallel, {@link #split(FileChannel,
+ * int)} finds chunks which begin at lines; each chunk can be parsed by {@link #parse(FileChannel,
+ * long, long, URIVisitor)} on its own thread with its own visitor, as {@link
+ * #parseInParallel(FileChannel, int, IntFunction)} does.
+ */
+public final class BulkURIParser {
+  private static final int MAX_WINDOW_SIZE = 1 << 30;
+  private static final int PROBE_SIZE = 4096;
+
+  private BulkURIParser() {}
+
+  /**
+   * Parse URIs in a slice of the byte array.
+   *
+   * <p>Offsets which are passed to the visitor are indices of the array.
+   *
+   * @param bytes source
+   * @param offset beginning index of the slice
+   * @param length length of the slice
+   * @param visitor receiver of components
+   * @return number of URIs
+   */
+  public static int parse(
+      @NonNull byte[] bytes, int offset, int length, @NonNull URIVisitor visitor) {
+    if (offset < 0 || length < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException(
+          "Offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+    }
+    return parseLines(ByteBuffer.wrap(bytes), offset, offset + length, visitor);
+  }
+
+  /**
+   * Parse URIs between the position and the limit of the buffer.
+   *
+   * <p>Offsets which are passed to the visitor are absolute indices of the buffer. The position of
+   * the buffer is not changed.
+   *
+   * @param buffer source; heap, direct or mapped
+   * @param visitor receiver of components
+   * @return number of URIs
+   */
+  public static int parse(@NonNull ByteBuffer buffer, @NonNull URIVisitor visitor) {
+    return parseLines(buffer, buffer.position(), buffer.limit(), visitor);
+  }
+
+  /**
+   * Parse URIs in a region of the file by mapping it to memory.
+   *
+   * <p>The region should begin at a line. A large region is mapped by windows which end at lines,
+   * so each window is passed to the visitor as the source buffer in turn.
+   *
+   * @param channel source file
+   * @param position beginning of the region in the file
+   * @param size size of the region
+   * @param visitor receiver of components
+   * @return number of URIs
+   * @throws IOException if the file cannot be mapped
+   * @throws IllegalArgumentException if a line is longer than 1 GiB
+   */
+  public static long parse(
+      @NonNull FileChannel channel, long position, long size, @NonNull URIVisitor visitor)
+      throws IOException {
+    return parse(channel, position, size, visitor, MAX_WINDOW_SIZE);
+  }
+
+  static long parse(
+      FileChannel channel, long position, long size, URIVisitor visitor, int windowSize)
+      throws IOException {
+    if (position < 0 || size < 0) {
+      throw new IllegalArgumentException("Position: " + position + ", size: " + size);
+    }
+
+    long count = 0;
+    final long end = position + size;
+    while (position < end) {
+      final int mappedSize = (int) Math.min(windowSize, end - position);
+      final ByteBuffer window = channel.map(MapMode.READ_ONLY, position, mappedSize);
+
+      int parsedSize = mappedSize;
+      if (position + mappedSize < end) {
+        parsedSize = lastIndexOf(window, '\n', 0, mappedSize) + 1;
+        if (parsedSize == 0) {
+          throw new IllegalArgumentException(
+              "Line is longer than " + windowSize + " bytes at " + position);
+        }
+      }
+      count += parseLines(window, 0, parsedSize, visitor);
+      position += parsedSize;
+    }
+    return count;
+  }
+
+  /**
+   * Split the file into chunks which begin at lines.
+   *
+   * <p>Chunks have about the same size; a chunk can be empty if a line is longer than the size.
+   *
+   * @param channel source file
+   * @param chunkCount number of chunks
+   * @return boundaries of chunks; the i-th chunk is from {@code [i]} (inclusive) to {@code [i + 1]}
+   *     (exclusive), so the length is {@code chunkCount + 1}
+   * @throws IOException if the file cannot be read
+   */
+  public static long[] split(@NonNull FileChannel channel, int chunkCount) throws IOException {
+    if (chunkCount < 1) {
+      throw new IllegalArgumentException("Chunk count must be positive: " + chunkCount);
+    }
+
+    final long size = channel.size();
+    final long[] boundaries = new long[chunkCount + 1];
+    final ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+    for (int i = 1; i < chunkCount; i++) {
+      final long nominal = Math.max(size / chunkCount * i, boundaries[i - 1]);
+      boundaries[i] = nextLineStart(channel, nominal, size, probe);
+    }
+    boundaries[chunkCount] = size;
+    return boundaries;
+  }
+
+  /**
+   * Parse URIs in the file in parallel by the common fork-join pool.
+   *
+   * @param channel source file
+   * @param chunkCount number of chunks; e.g. the number of available processors
+   * @param visitorFactory creates a visitor for each chunk by its index; visitors are used by
+   *     different threads, so results should be kept per visitor and merged after parsing
+   * @return number of URIs
+   * @throws IOException if the file cannot be read
+   */
+  public static long parseInParallel(
+      @NonNull FileChannel channel,
+      int chunkCount,
+      @NonNull IntFunction<? extends URIVisitor> visitorFactory)
+      throws IOException {
+    final long[] boundaries = split(channel, chunkCount);
+    try {
+      return IntStream.range(0, chunkCount)
+          .parallel()
+          .mapToLong(
+              i -> {
+                try {
+                  return parse(
+                      channel,
+                      boundaries[i],
+                      boundaries[i + 1] - boundaries[i],
+                      visitorFactory.apply(i));
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              })
+          .sum();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Returns a region of the buffer as a string; it is for visitors which need to keep a component.
+   */
+  public static String asString(@NonNull ByteBuffer source, int start, int end) {
+    final byte[] bytes = new byte[end - start];
+    for (int i = start; i < end; i++) {
+      bytes[i - start] = source.get(i);
+    }
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  /** Returns true if a region of the buffer equals the ASCII string; nothing is copied. */
+  public static boolean regionEquals(
+      @NonNull ByteBuffer source, int start, int end, @NonNull CharSequence s) {
+    if (end - start != s.length()) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if ((source.get(i) & 0xFF) != s.charAt(i - start)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int parseLines(ByteBuffer source, int start, int end, URIVisitor visitor) {
+    int count = 0;
+    int lineStart = start;
+    while (lineStart < end) {
+      int lineEnd = indexOf(source, '\n', lineStart, end);
+      final int nextLineStart = lineEnd + 1;
+      if (lineEnd > lineStart && source.get(lineEnd - 1) == '\r') {
+        lineEnd--;
+      }
+      if (lineEnd > lineStart) {
+        parseURI(source, lineStart, lineEnd, visitor);
+        count++;
+      }
+      lineStart = nextLineStart;
+    }
+    return count;
+  }
+
+  private static void parseURI(ByteBuffer source, int start, int end, URIVisitor visitor) {
+    visitor.startURI(source, start, end);
+
+    int i = start;
+    final int schemeEnd = schemeEnd(source, start, end);
+    if (schemeEnd > start) {
+      visitor.scheme(start, schemeEnd);
+      i = schemeEnd + 1;
+    }
+
+    if (i + 1 < end && source.get(i) == '/' && source.get(i + 1) == '/') {
+      final int authorityStart = i + 2;
+      i = authorityStart;
+      while (i < end) {
+        final byte c = source.get(i);
+        if (c == '/' || c == '?' || c == '#') {
+          break;
+        }
+        i++;
+      }
+      parseAuthority(source, authorityStart, i, visitor);
+    }
+
+    int segmentStart = i;
+    for (; i < end; i++) {
+      final byte c = source.get(i);
+      if (c == '?' || c == '#') {
+        break;
+      }
+      if (c == '/') {
+        if (i > segmentStart) {
+          visitor.pathSegment(segmentStart, i);
+        }
+        segmentStart = i + 1;
+      }
+    }
+    if (i > segmentStart) {
+      visitor.pathSegment(segmentStart, i);
+    }
+
+    if (i < end && source.get(i) == '?') {
+      int pairStart = ++i;
+      int equal = -1;
+      for (; ; i++) {
+        final byte c = i < end ? source.get(i) : (byte) '#';
+        if (c == '&' || c == '#') {
+          if (i > pairStart) {
+            if (equal < 0) {
+              visitor.queryParameter(pairStart, i, i, i);
+            } else {
+              visitor.queryParameter(pairStart, equal, equal + 1, i);
+            }
+          }
+          if (c == '#') {
+            break;
+          }
+          pairStart = i + 1;
+          equal = -1;
+        } else if (c == '=' && equal < 0) {
+          equal = i;
+        }
+      }
+    }
+
+    if (i < end) { // at "#"
+      visitor.fragment(i + 1, end);
+    }
+    visitor.endURI();
+  }
+
+  /** Returns the index of ":" after a scheme, or -1 if the URI doesn't begin with a scheme. */
+  private static int schemeEnd(ByteBuffer source, int start, int end) {
+    if (!isAlpha(source.get(start))) {
+      return -1;
+    }
+    for (int i = start + 1; i < end; i++) {
+      final byte c = source.get(i);
+      if (c == ':') {
+        return i;
+      }
+      if (!isAlpha(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isAlpha(byte c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static void parseAuthority(ByteBuffer source, int start, int end, URIVisitor visitor) {
+    final int at = lastIndexOf(source, '@', start, end);
+    final int hostStart = at < 0 ? start : at + 1;
+
+    int colon = -1;
+    if (hostStart < end && source.get(hostStart) == '[') { // IPv6
+      final int close = indexOf(source, ']', hostStart, end);
+      if (close + 1 < end && source.get(close + 1) == ':') {
+        colon = close + 1;
+      }
+    } else {
+      colon = lastIndexOf(source, ':', hostStart, end);
+    }
+
+    final int hostEnd = colon < 0 ? end : colon;
+    if (hostEnd > hostStart) {
+      visitor.host(hostStart, hostEnd);
+    }
+    if (colon >= 0) {
+      final int port = parsePort(source, colon + 1, end);
+      if (port >= 0) {
+        visitor.port(port);
+      }
+    }
+  }
+
+  /** Returns the port number, or -1 if it is empty or invalid. */
+  private static int parsePort(ByteBuffer source, int start, int end) {
+    if (start == end || end - start > 5) {
+      return -1;
+    }
+    int port = 0;
+    for (int i = start; i < end; i++) {
+      final byte c = source.get(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      port = port * 10 + (c - '0');
+    }
+    return port <= 65535 ? port : -1;
+  }
+
+  /** Returns the index of the first byte in the region, or {@code end} if absent. */
+  private static int indexOf(ByteBuffer source, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (source.get(i) == c) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  /** Returns the index of the last byte in the region, or -1 if absent. */
+  private static int lastIndexOf(ByteBuffer source, char c, int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      if (source.get(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the beginning of the first line at or after the position. */
+  private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe)
+      throws IOException {
+    if (from == 0) {
+      return 0;
+    }
+
+    long position = from - 1; // a line begins at "from" if the previous byte is LF
+    while (position < size) {
+      probe.clear();
+      final int read = channel.read(probe, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+}
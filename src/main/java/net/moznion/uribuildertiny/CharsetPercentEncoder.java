@@ -0,0 +1,139 @@
+package net.moznion.uribuildertiny;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Percent-encoder for any charset in the same manner as {@link java.net.URLEncoder}.
+ *
+ * <p>Each run of characters which need escaping is converted by a {@link CharsetEncoder} into a
+ * {@link ByteBuffer}; the encoder and the buffers are confined to a thread and reused, so encoding
+ * doesn't create intermediate strings or byte arrays. An instance is shared per charset.
+ *
+ * <p>UTF-8 should be encoded by {@link UTF8PercentEncoder} instead; it is much faster.
+ */
+final class CharsetPercentEncoder {
+  private static final ConcurrentMap<Charset, CharsetPercentEncoder> INSTANCES =
+      new ConcurrentHashMap<>();
+
+  // buffers which grow larger than this are not kept for the next encoding
+  private static final int MAX_RETAINED_BUFFER_SIZE = 8192;
+
+  private final Charset charset;
+  private final ThreadLocal<State> states;
+
+  private CharsetPercentEncoder(Charset charset) {
+    if (!charset.canEncode() || charset.newEncoder() == null) {
+      throw new IllegalArgumentException("Charset doesn't support encoding: " + charset.name());
+    }
+    this.charset = charset;
+    states = ThreadLocal.withInitial(State::new);
+  }
+
+  /**
+   * Get the instance for the charset.
+   *
+   * @throws IllegalArgumentException if the charset doesn't support encoding
+   */
+  static CharsetPercentEncoder of(Charset charset) {
+    return INSTANCES.computeIfAbsent(charset, CharsetPercentEncoder::new);
+  }
+
+  String encode(CharSequence input) {
+    final int length = input.length();
+
+    int i = UTF8PercentEncodingSink.skipUnreserved(input, 0, length);
+    if (i == length) {
+      return input.toString();
+    }
+
+    final StringBuilder sb = new StringBuilder(length + 16).append(input, 0, i);
+    final State state = states.get();
+    while (i < length) {
+      final char c = input.charAt(i);
+      if (c == ' ') {
+        sb.append('+');
+        i++;
+      } else {
+        // a surrogate pair is kept in a run since runs end only at unreserved characters or space
+        int runEnd = i + 1;
+        while (runEnd < length
+            && input.charAt(runEnd) != ' '
+            && !UTF8PercentEncodingSink.isUnreserved(input.charAt(runEnd))) {
+          runEnd++;
+        }
+        state.encode(input, i, runEnd, sb);
+        i = runEnd;
+      }
+
+      final int unreservedEnd = UTF8PercentEncodingSink.skipUnreserved(input, i, length);
+      sb.append(input, i, unreservedEnd);
+      i = unreservedEnd;
+    }
+    return sb.toString();
+  }
+
+  private final class State {
+    private final CharsetEncoder encoder;
+    private CharBuffer chars;
+    private final ByteBuffer bytes;
+
+    private State() {
+      // malformed surrogates and unmappable characters are replaced as String#getBytes() does
+      encoder =
+          charset
+              .newEncoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      chars = CharBuffer.allocate(64);
+      bytes = ByteBuffer.allocate(256);
+    }
+
+    /** Encode a run by the charset, then append each byte as "%XX". */
+    private void encode(CharSequence input, int start, int end, StringBuilder out) {
+      final int length = end - start;
+      if (chars.capacity() < length) {
+        chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+      }
+      chars.clear();
+      for (int i = start; i < end; i++) {
+        chars.put(input.charAt(i));
+      }
+      chars.flip();
+
+      // each run is encoded independently (e.g. with BOM of UTF-16) as java.net.URLEncoder does
+      encoder.reset();
+      bytes.clear();
+      CoderResult result = encoder.encode(chars, bytes, true);
+      while (result.isOverflow()) {
+        appendEscaped(out);
+        result = encoder.encode(chars, bytes, true);
+      }
+      while (encoder.flush(bytes).isOverflow()) {
+        appendEscaped(out);
+      }
+      appendEscaped(out);
+
+      if (chars.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+        chars = CharBuffer.allocate(64);
+      }
+    }
+
+    private void appendEscaped(StringBuilder out) {
+      bytes.flip();
+      while (bytes.hasRemaining()) {
+        final int b = bytes.get() & 0xFF;
+        out.append('%')
+            .append(ConcreteEntityURLEncoder.HEX[b >> 4])
+            .append(ConcreteEntityURLEncoder.HEX[b & 0x0F]);
+      }
+      bytes.clear();
+    }
+  }
+}
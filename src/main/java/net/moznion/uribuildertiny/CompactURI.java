@@ -0,0 +1,181 @@
+package net.moznion.uribuildertiny;
+
+import java.net.URI;
+import lombok.NonNull;
+
+/**
+ * Lightweight immutable URI.
+ *
+ * <p>This holds only the serialised string and offsets of components, so it is much smaller than
+ * {@link URI} and cheap to create. Each accessor cuts out the component on demand; components are
+ * not decoded (same as {@code getRaw*()} of {@link URI}). The hash code is the one of the
+ * serialised string, which is cached by {@link String} itself.
+ *
+ * @see URIBuilderTiny#buildCompact()
+ */
+public final class CompactURI {
+  private final String value;
+  private final int schemeEnd; // -1 if absent
+  private final int hostStart; // -1 if absent
+  private final int hostEnd;
+  private final int pathStart;
+  private final int queryStart; // index of "?", or -1 if absent
+  private final int fragmentStart; // index of "#", or -1 if absent
+
+  private CompactURI(
+      String value,
+      int schemeEnd,
+      int hostStart,
+      int hostEnd,
+      int pathStart,
+      int queryStart,
+      int fragmentStart) {
+    this.value = value;
+    this.schemeEnd = schemeEnd;
+    this.hostStart = hostStart;
+    this.hostEnd = hostEnd;
+    this.pathStart = pathStart;
+    this.queryStart = queryStart;
+    this.fragmentStart = fragmentStart;
+  }
+
+  /**
+   * Create an instance from URI string.
+   *
+   * <p>This finds the boundaries of components by one scan in the same manner as {@link URI}, but
+   * it doesn't validate characters.
+   *
+   * @param value URI string
+   * @return an instance
+   */
+  public static CompactURI parse(@NonNull String value) {
+    final int length = value.length();
+
+    int schemeEnd = -1;
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c == ':') {
+        if (i > 0) {
+          schemeEnd = i;
+        }
+        break;
+      }
+      if (c == '/' || c == '?' || c == '#') {
+        break;
+      }
+    }
+
+    int position = schemeEnd + 1;
+    int hostStart = -1;
+    int hostEnd = -1;
+    if (value.startsWith("//", position)) {
+      final int authorityStart = position + 2;
+      int authorityEnd = authorityStart;
+      while (authorityEnd < length && !isAuthorityTerminator(value.charAt(authorityEnd))) {
+        authorityEnd++;
+      }
+
+      hostStart = value.lastIndexOf('@', authorityEnd - 1) + 1; // skip user-info
+      if (hostStart < authorityStart) {
+        hostStart = authorityStart;
+      }
+      hostEnd = authorityEnd;
+      for (int i = authorityEnd - 1; i >= hostStart; i--) {
+        final char c = value.charAt(i);
+        if (c == ':') {
+          hostEnd = i;
+          break;
+        }
+        if (c < '0' || c > '9') {
+          break;
+        }
+      }
+      position = authorityEnd;
+    }
+
+    int fragmentStart = value.indexOf('#', position);
+    int queryStart = value.indexOf('?', position);
+    if (fragmentStart >= 0 && queryStart > fragmentStart) {
+      queryStart = -1;
+    }
+
+    return new CompactURI(
+        value, schemeEnd, hostStart, hostEnd, position, queryStart, fragmentStart);
+  }
+
+  private static boolean isAuthorityTerminator(char c) {
+    return c == '/' || c == '?' || c == '#';
+  }
+
+  /** Returns the scheme, or null if absent. */
+  public String getScheme() {
+    return schemeEnd < 0 ? null : value.substring(0, schemeEnd);
+  }
+
+  /** Returns the host, or null if absent. */
+  public String getHost() {
+    return hostStart < 0 || hostStart == hostEnd ? null : value.substring(hostStart, hostEnd);
+  }
+
+  /** Returns the port number, or -1 if absent. */
+  public int getPort() {
+    if (hostStart < 0 || hostEnd == pathStart || hostEnd + 1 == pathStart) {
+      return -1;
+    }
+
+    int port = 0;
+    for (int i = hostEnd + 1; i < pathStart; i++) {
+      port = port * 10 + (value.charAt(i) - '0');
+    }
+    return port;
+  }
+
+  /** Returns the path; empty string if absent. */
+  public String getPath() {
+    int pathEnd = queryStart >= 0 ? queryStart : fragmentStart;
+    if (pathEnd < 0) {
+      pathEnd = value.length();
+    }
+    return value.substring(pathStart, pathEnd);
+  }
+
+  /** Returns the query without "?", or null if absent. */
+  public String getQuery() {
+    if (queryStart < 0) {
+      return null;
+    }
+    return value.substring(queryStart + 1, fragmentStart < 0 ? value.length() : fragmentStart);
+  }
+
+  /** Returns the fragment without "#", or null if absent. */
+  public String getFragment() {
+    return fragmentStart < 0 ? null : value.substring(fragmentStart + 1);
+  }
+
+  /**
+   * Convert to {@link URI}.
+   *
+   * @throws IllegalArgumentException if the string violates RFC 2396
+   */
+  public URI toURI() {
+    return URI.create(value);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    return o instanceof CompactURI && value.equals(((CompactURI) o).value);
+  }
+
+  @Override
+  public int hashCode() {
+    return value.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+}
@@ -1,22 +1,44 @@
 package net.moznion.uribuildertiny;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import lombok.NonNull;
 
+/**
+ * Encoder which applies percent-encoding in the same manner as {@link java.net.URLEncoder}.
+ *
+ * <p>UTF-8 is encoded by {@link UTF8PercentEncoder}; it doesn't need any static tables so it keeps
+ * class initialisation cheap. Other charsets are encoded by {@link CharsetPercentEncoder} which
+ * reuses a {@link java.nio.charset.CharsetEncoder} per thread.
+ */
 class ConcreteEntityURLEncoder implements EntityURLEncoder {
-  private final String encodingCharsetName;
+  static final char[] HEX = {
+    '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+  };
+
+  private final boolean isUTF8;
+  private final CharsetPercentEncoder charsetPercentEncoder; // null if UTF-8
 
   ConcreteEntityURLEncoder(final Charset encodingCharset) {
-    encodingCharsetName = encodingCharset.name();
+    isUTF8 = StandardCharsets.UTF_8.equals(encodingCharset);
+    charsetPercentEncoder = isUTF8 ? null : CharsetPercentEncoder.of(encodingCharset);
   }
 
   @Override
   public String encode(@NonNull Object input) {
-    try {
-      return java.net.URLEncoder.encode(input.toString(), encodingCharsetName);
-    } catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e);
+    if (isUTF8) {
+      return UTF8PercentEncoder.encode(input.toString());
+    }
+
+    return charsetPercentEncoder.encode(
+        input instanceof CharSequence ? (CharSequence) input : input.toString());
+  }
+
+  @Override
+  public EntitySink sinkOf(StringBuilder out) {
+    if (isUTF8) {
+      return new UTF8PercentEncodingSink(out);
     }
+    return EntityURLEncoder.super.sinkOf(out);
   }
 }
@@ -0,0 +1,107 @@
+package net.moznion.uribuildertiny;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Entity whose encoding is deferred until building URI.
+ *
+ * <p>The source is a {@link CharSequence} or an {@link EntityWriter}; it is encoded directly into
+ * the buffer of URI, so it is never materialised as a {@link String} on building. In the deferred
+ * mode of {@link URIBuilderTiny}, the source can also be an immutable value (see {@link
+ * #isImmutable(Object)}) or the string form of another object, which is taken on setting.
+ */
+final class DeferredEntity {
+  private final Object source;
+  private final EntityURLEncoder entityURLEncoder;
+
+  DeferredEntity(Object source, EntityURLEncoder entityURLEncoder) {
+    this.source = source;
+    this.entityURLEncoder = entityURLEncoder;
+  }
+
+  static boolean isDeferrable(Object entity) {
+    return entity instanceof EntityWriter
+        || (entity instanceof CharSequence && !(entity instanceof String));
+  }
+
+  /**
+   * Returns true if the content can be changed after setting; i.e. the source is a mutable {@link
+   * CharSequence} or an {@link EntityWriter}. The encoded form of other sources can be reused.
+   */
+  boolean isVolatile() {
+    return isDeferrable(source);
+  }
+
+  /**
+   * Returns true if the entity can be a part of a cache key; i.e. the source is an immutable value
+   * whose string form never changes.
+   */
+  boolean isCacheable() {
+    return isImmutable(source);
+  }
+
+  /** Returns true if the object is an immutable value whose string form never changes. */
+  static boolean isImmutable(Object entity) {
+    return entity instanceof String
+        || entity instanceof Integer
+        || entity instanceof Long
+        || entity instanceof Short
+        || entity instanceof Byte
+        || entity instanceof Double
+        || entity instanceof Float
+        || entity instanceof Boolean
+        || entity instanceof Character
+        || entity instanceof Enum;
+  }
+
+  /** Append the entity to the builder, or the encoded string as is. */
+  static void append(StringBuilder out, Object entity) {
+    if (entity instanceof DeferredEntity) {
+      ((DeferredEntity) entity).appendTo(out);
+      return;
+    }
+    out.append((String) entity);
+  }
+
+  void appendTo(StringBuilder out) {
+    final EntitySink sink = entityURLEncoder.sinkOf(out);
+    if (source instanceof EntityWriter) {
+      try {
+        ((EntityWriter) source).writeTo(sink);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    } else if (source instanceof CharSequence) {
+      sink.append((CharSequence) source);
+    } else {
+      sink.append(source.toString());
+    }
+    sink.finish();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DeferredEntity)) {
+      return false;
+    }
+    final DeferredEntity that = (DeferredEntity) o;
+    return entityURLEncoder.getClass() == that.entityURLEncoder.getClass()
+        && source.equals(that.source);
+  }
+
+  @Override
+  public int hashCode() {
+    return source.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    appendTo(sb);
+    return sb.toString();
+  }
+}
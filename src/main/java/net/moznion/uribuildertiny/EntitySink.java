@@ -0,0 +1,19 @@
+package net.moznion.uribuildertiny;
+
+/**
+ * Sink which encodes appended characters into the URI being built.
+ *
+ * <p>{@link #finish()} must be called after the last character is appended.
+ */
+interface EntitySink extends Appendable {
+  @Override
+  EntitySink append(CharSequence csq);
+
+  @Override
+  EntitySink append(CharSequence csq, int start, int end);
+
+  @Override
+  EntitySink append(char c);
+
+  void finish();
+}
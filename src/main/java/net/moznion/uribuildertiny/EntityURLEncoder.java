@@ -4,4 +4,9 @@ import lombok.NonNull;
 
 interface EntityURLEncoder {
   String encode(@NonNull Object input);
+
+  /** Returns a sink which encodes appended characters into {@code out}. */
+  default EntitySink sinkOf(StringBuilder out) {
+    return new BufferingEntitySink(this, out);
+  }
 }
@@ -0,0 +1,21 @@
+package net.moznion.uribuildertiny;
+
+import java.io.IOException;
+
+/**
+ * Writer of an entity (e.g. a value of query parameter) which is invoked on building URI.
+ *
+ * <p>Characters which are written to the sink are encoded directly into the URI being built, so
+ * a large value doesn't have to be materialised as a {@link String}. This may be invoked on every
+ * building, so it should write the same content each time.
+ */
+@FunctionalInterface
+public interface EntityWriter {
+  /**
+   * Write the entity.
+   *
+   * @param sink sink to write the raw (not encoded) entity to
+   * @throws IOException if the entity cannot be read
+   */
+  void writeTo(Appendable sink) throws IOException;
+}
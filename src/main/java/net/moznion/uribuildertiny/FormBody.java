@@ -0,0 +1,179 @@
+package net.moznion.uribuildertiny;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Body of application/x-www-form-urlencoded.
+ *
+ * <p>The content is percent-encoded already, so it is written as bytes without any intermediate
+ * {@link String}. Characters which are not ASCII (only by raw parameters) are written as UTF-8.
+ *
+ * @see URIBuilderTiny#buildFormBody()
+ */
+public final class FormBody {
+  /** Value of Content-Type header. */
+  public static final String CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final String content;
+  private final boolean isASCII;
+
+  /** Exact length of the body in bytes; it can be used as Content-Length. */
+  @Getter private final long contentLength;
+
+  FormBody(String content) {
+    this.content = content;
+    isASCII = isASCII(content);
+    contentLength = isASCII ? content.length() : utf8Length(content);
+  }
+
+  /**
+   * Write the body to the stream.
+   *
+   * @param out destination
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeTo(@NonNull OutputStream out) throws IOException {
+    final byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, Math.max(contentLength, 16))];
+    if (isASCII) {
+      final int length = content.length();
+      for (int start = 0; start < length; start += chunk.length) {
+        final int end = Math.min(length, start + chunk.length);
+        for (int i = start; i < end; i++) {
+          chunk[i - start] = (byte) content.charAt(i);
+        }
+        out.write(chunk, 0, end - start);
+      }
+      return;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.wrap(chunk);
+    final CharsetEncoder encoder = newEncoder();
+    final CharBuffer chars = CharBuffer.wrap(content);
+    CoderResult result;
+    do {
+      result = encoder.encode(chars, buffer, true);
+      if (result.isOverflow() || !chars.hasRemaining()) {
+        out.write(chunk, 0, buffer.position());
+        buffer.clear();
+      }
+    } while (result.isOverflow());
+    encoder.flush(buffer);
+    out.write(chunk, 0, buffer.position());
+  }
+
+  /**
+   * Write the body to the channel.
+   *
+   * @param channel destination
+   * @throws IOException if the channel cannot be written
+   */
+  public void writeTo(@NonNull WritableByteChannel channel) throws IOException {
+    final ByteBuffer buffer =
+        ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, Math.max(contentLength, 16)));
+    final CharsetEncoder encoder = newEncoder();
+    final CharBuffer chars = CharBuffer.wrap(content);
+    CoderResult result;
+    do {
+      result = encoder.encode(chars, buffer, true);
+      if (!result.isOverflow()) {
+        encoder.flush(buffer);
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    } while (result.isOverflow());
+  }
+
+  /**
+   * Write the body to the buffer.
+   *
+   * @param buffer destination; it must have {@link #getContentLength()} bytes remaining at least
+   * @throws BufferOverflowException if the buffer doesn't have enough space
+   */
+  public void writeTo(@NonNull ByteBuffer buffer) {
+    if (buffer.remaining() < contentLength) {
+      throw new BufferOverflowException();
+    }
+
+    if (isASCII) {
+      final int length = content.length();
+      for (int i = 0; i < length; i++) {
+        buffer.put((byte) content.charAt(i));
+      }
+      return;
+    }
+
+    final CharsetEncoder encoder = newEncoder();
+    if (encoder.encode(CharBuffer.wrap(content), buffer, true).isOverflow()
+        || encoder.flush(buffer).isOverflow()) {
+      // should not happen because the length of the body is checked
+      throw new BufferOverflowException();
+    }
+  }
+
+  /**
+   * Returns the encoder which replaces malformed surrogates with "?" as {@link String#getBytes}
+   * does, so the number of written bytes always equals {@link #getContentLength()}.
+   */
+  private static CharsetEncoder newEncoder() {
+    return StandardCharsets.UTF_8
+        .newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  private static boolean isASCII(String s) {
+    final int length = s.length();
+    for (int i = 0; i < length; i++) {
+      if (s.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long utf8Length(String s) {
+    final int length = s.length();
+    long utf8Length = length;
+    for (int i = 0; i < length; i++) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        utf8Length += 1;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        utf8Length += 2; // 4 bytes for 2 chars
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        utf8Length += 0; // malformed; replaced with "?"
+      } else {
+        utf8Length += 2;
+      }
+    }
+    return utf8Length;
+  }
+
+  /** Returns the body as string. */
+  @Override
+  public String toString() {
+    return content;
+  }
+}
@@ -0,0 +1,457 @@
+package net.moznion.uribuildertiny;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Immutable sorted set of URIs which are stored front-coded in large blocks.
+ *
+ * <p>URIs are sorted by their UTF-8 bytes (same as {@link String} order for ASCII, so for
+ * percent-encoded URIs) and grouped into buckets of {@value #BUCKET_SIZE} entries. The first entry
+ * of a bucket is stored as is, and each of the others is stored as the length of the prefix shared
+ * with the previous entry and the rest:
+ *
+ * <pre>
+ * bucket = varint(length) bytes (varint(shared) varint(length) bytes){0,15}
+ * </pre>
+ *
+ * <p>Buckets are packed into {@code byte[]} (or direct, off-heap) blocks, and only one {@code long}
+ * per bucket is kept as an index. So URIs which share long prefixes such as {@code
+ * https://host/base/} cost a few dozen bytes each; a hundred million of them fit in a few GB. A
+ * lookup is a binary search over the first entries of buckets followed by a scan of one bucket.
+ *
+ * <p>An instance is thread-safe.
+ */
+public final class FrontCodedURIStore implements Iterable<String> {
+  static final int BUCKET_SIZE = 16;
+
+  private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+  private final ByteBuffer[] blocks;
+  private final byte[][] arrays; // backing arrays of blocks; null if off-heap
+  private final long[] bucketPositions; // index of block << 32 | offset in block
+  private final int size;
+
+  /** Total size of stored entries in bytes, excluding the index. */
+  @Getter private final long encodedByteSize;
+
+  private FrontCodedURIStore(
+      ByteBuffer[] blocks, long[] bucketPositions, int size, long encodedByteSize) {
+    this.blocks = blocks;
+    this.bucketPositions = bucketPositions;
+    this.size = size;
+    this.encodedByteSize = encodedByteSize;
+
+    if (blocks.length > 0 && blocks[0].hasArray()) {
+      arrays = new byte[blocks.length][];
+      for (int i = 0; i < blocks.length; i++) {
+        arrays[i] = blocks[i].array();
+      }
+    } else {
+      arrays = null;
+    }
+  }
+
+  /** Create a builder which accepts URIs in ascending order. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Create a store of URIs in any order; duplicates are removed.
+   *
+   * <p>This sorts URIs on heap, so use {@link #builder()} for URIs which are sorted already.
+   *
+   * @param uris URI strings
+   * @return new store
+   */
+  public static FrontCodedURIStore of(@NonNull Collection<? extends CharSequence> uris) {
+    final byte[][] sorted = new byte[uris.size()][];
+    int i = 0;
+    for (CharSequence uri : uris) {
+      sorted[i++] = uri.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    Arrays.sort(sorted, FrontCodedURIStore::compare);
+
+    final Builder builder = builder();
+    for (byte[] uri : sorted) {
+      builder.add(uri);
+    }
+    return builder.build();
+  }
+
+  /** Returns the number of URIs. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the URI at the index.
+   *
+   * @param index index in ascending order
+   * @return URI string
+   */
+  public String get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+
+    final Reader reader = new Reader();
+    reader.seekBucket(index / BUCKET_SIZE);
+    for (int i = index % BUCKET_SIZE; i > 0; i--) {
+      reader.readNext();
+    }
+    return reader.currentString();
+  }
+
+  /**
+   * Get the URI at the index as a builder.
+   *
+   * @param index index in ascending order
+   * @return new builder which has the components of the URI
+   */
+  public URIBuilderTiny getBuilder(int index) {
+    return new URIBuilderTiny(get(index));
+  }
+
+  /**
+   * Find the URI by binary search.
+   *
+   * @param uri URI string
+   * @return index of the URI if found; otherwise {@code -(insertion point) - 1} as {@link
+   *     Arrays#binarySearch(Object[], Object)}
+   */
+  public int indexOf(@NonNull CharSequence uri) {
+    final byte[] key = uri.toString().getBytes(StandardCharsets.UTF_8);
+
+    // find the last bucket whose first entry is less than or equal to the key
+    int lo = 0;
+    int hi = bucketPositions.length - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int cmp = compareFirstEntry(mid, key);
+      if (cmp == 0) {
+        return mid * BUCKET_SIZE;
+      }
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    if (hi < 0) {
+      return -1;
+    }
+
+    final Reader reader = new Reader();
+    reader.seekBucket(hi);
+    final int end = Math.min(size, (hi + 1) * BUCKET_SIZE);
+    for (int index = hi * BUCKET_SIZE + 1; index < end; index++) {
+      reader.readNext();
+      final int cmp = compare(reader.current, reader.currentLength, key, key.length);
+      if (cmp == 0) {
+        return index;
+      }
+      if (cmp > 0) {
+        return -index - 1;
+      }
+    }
+    return -end - 1;
+  }
+
+  /** Returns true if the store contains the URI. */
+  public boolean contains(@NonNull CharSequence uri) {
+    return indexOf(uri) >= 0;
+  }
+
+  /** Iterate URIs in ascending order; each bucket is decoded once. */
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private final Reader reader = new Reader();
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public String next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        if (index % BUCKET_SIZE == 0) {
+          reader.seekBucket(index / BUCKET_SIZE);
+        } else {
+          reader.readNext();
+        }
+        index++;
+        return reader.currentString();
+      }
+    };
+  }
+
+  private int compareFirstEntry(int bucket, byte[] key) {
+    final long position = bucketPositions[bucket];
+    final ByteBuffer block = blocks[(int) (position >>> 32)];
+    int offset = (int) position;
+
+    int length = 0;
+    for (int shift = 0; ; shift += 7) {
+      final byte b = block.get(offset++);
+      length |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+
+    final int commonLength = Math.min(length, key.length);
+    for (int i = 0; i < commonLength; i++) {
+      final int cmp = (block.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return length - key.length;
+  }
+
+  private static int compare(byte[] a, byte[] b) {
+    return compare(a, a.length, b, b.length);
+  }
+
+  private static int compare(byte[] a, int aLength, byte[] b, int bLength) {
+    final int commonLength = Math.min(aLength, bLength);
+    for (int i = 0; i < commonLength; i++) {
+      final int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return aLength - bLength;
+  }
+
+  /** Decoder of entries in a bucket; the current entry is rebuilt in a reused array. */
+  private final class Reader {
+    private ByteBuffer block;
+    private byte[] array; // null if off-heap
+    private int offset;
+    private byte[] current = new byte[256];
+    private int currentLength;
+
+    private void seekBucket(int bucket) {
+      final long position = bucketPositions[bucket];
+      final int blockIndex = (int) (position >>> 32);
+      block = blocks[blockIndex];
+      array = arrays == null ? null : arrays[blockIndex];
+      offset = (int) position;
+      read(0);
+    }
+
+    private void readNext() {
+      read(readVarint());
+    }
+
+    private void read(int sharedLength) {
+      final int length = readVarint();
+      if (current.length < sharedLength + length) {
+        current = Arrays.copyOf(current, Math.max(sharedLength + length, current.length * 2));
+      }
+      if (array != null) {
+        System.arraycopy(array, offset, current, sharedLength, length);
+      } else {
+        for (int i = 0; i < length; i++) {
+          current[sharedLength + i] = block.get(offset + i);
+        }
+      }
+      offset += length;
+      currentLength = sharedLength + length;
+    }
+
+    private int readVarint() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        final byte b = block.get(offset++);
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+    }
+
+    private String currentString() {
+      return new String(current, 0, currentLength, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Builder of {@link FrontCodedURIStore}. */
+  public static final class Builder {
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private boolean offHeap;
+
+    private final List<ByteBuffer> blocks = new ArrayList<>();
+    private ByteBuffer block;
+    private long[] bucketPositions = new long[64];
+    private int bucketCount;
+    private int size;
+    private long encodedByteSize;
+
+    private byte[] previous = new byte[0];
+    private byte[] bucket = new byte[1024];
+    private int bucketLength;
+
+    private Builder() {}
+
+    /**
+     * Set the size of each block in bytes; 1 MiB by default.
+     *
+     * @throws IllegalStateException if a URI is added already
+     */
+    public Builder blockSize(int blockSize) {
+      checkNotStarted();
+      if (blockSize <= 0) {
+        throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+      }
+      this.blockSize = blockSize;
+      return this;
+    }
+
+    /**
+     * Set flag to decide to allocate blocks as direct (off-heap) buffers.
+     *
+     * @throws IllegalStateException if a URI is added already
+     */
+    public Builder offHeap(boolean offHeap) {
+      checkNotStarted();
+      this.offHeap = offHeap;
+      return this;
+    }
+
+    private void checkNotStarted() {
+      if (size > 0) {
+        throw new IllegalStateException("URIs are added already");
+      }
+    }
+
+    /**
+     * Add a URI; URIs must be added in ascending order of UTF-8 bytes, and the same URI as the
+     * previous one is ignored.
+     *
+     * @throws IllegalArgumentException if the URI is less than the previous one
+     */
+    public Builder add(@NonNull CharSequence uri) {
+      return add(uri.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Add a URI; same as {@link #add(CharSequence)}. */
+    public Builder add(@NonNull URI uri) {
+      return add(uri.toString());
+    }
+
+    /** Add the URI which is built by the builder; same as {@link #add(CharSequence)}. */
+    public Builder add(@NonNull URIBuilderTiny builder) {
+      return add(builder.build().toString());
+    }
+
+    private Builder add(byte[] uri) {
+      final int cmp = compare(previous, uri);
+      if (size > 0 && cmp == 0) {
+        return this;
+      }
+      if (size > 0 && cmp > 0) {
+        throw new IllegalArgumentException(
+            "URIs must be added in ascending order: " + new String(uri, StandardCharsets.UTF_8));
+      }
+
+      if (size % BUCKET_SIZE == 0) {
+        flushBucket();
+        writeVarint(uri.length);
+        writeBytes(uri, 0, uri.length);
+      } else {
+        int shared = 0;
+        final int maxShared = Math.min(previous.length, uri.length);
+        while (shared < maxShared && previous[shared] == uri[shared]) {
+          shared++;
+        }
+        writeVarint(shared);
+        writeVarint(uri.length - shared);
+        writeBytes(uri, shared, uri.length - shared);
+      }
+
+      previous = uri;
+      size++;
+      return this;
+    }
+
+    private void writeVarint(int value) {
+      ensureBucketCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        bucket[bucketLength++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bucket[bucketLength++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) {
+      ensureBucketCapacity(length);
+      System.arraycopy(bytes, offset, bucket, bucketLength, length);
+      bucketLength += length;
+    }
+
+    private void ensureBucketCapacity(int length) {
+      if (bucketLength + length > bucket.length) {
+        bucket = Arrays.copyOf(bucket, Math.max(bucketLength + length, bucket.length * 2));
+      }
+    }
+
+    /** Move the pending bucket into the current block. */
+    private void flushBucket() {
+      if (bucketLength == 0) {
+        return;
+      }
+
+      if (block == null || block.remaining() < bucketLength) {
+        final int capacity = Math.max(blockSize, bucketLength);
+        block = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        blocks.add(block);
+      }
+
+      if (bucketCount == bucketPositions.length) {
+        bucketPositions = Arrays.copyOf(bucketPositions, bucketCount * 2);
+      }
+      bucketPositions[bucketCount++] = ((long) (blocks.size() - 1) << 32) | block.position();
+      block.put(bucket, 0, bucketLength);
+      encodedByteSize += bucketLength;
+      bucketLength = 0;
+    }
+
+    /**
+     * Build the store. The builder must not be used after this.
+     *
+     * @return new store
+     */
+    public FrontCodedURIStore build() {
+      flushBucket();
+
+      final ByteBuffer[] builtBlocks = blocks.toArray(new ByteBuffer[0]);
+      if (!offHeap && builtBlocks.length > 0) {
+        // trim the last block
+        final ByteBuffer last = builtBlocks[builtBlocks.length - 1];
+        builtBlocks[builtBlocks.length - 1] =
+            ByteBuffer.wrap(Arrays.copyOf(last.array(), last.position()));
+      }
+
+      return new FrontCodedURIStore(
+          builtBlocks, Arrays.copyOf(bucketPositions, bucketCount), size, encodedByteSize);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package net.moznion.uribuildertiny;
+
+import java.net.IDN;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+
+/**
+ * Encoder for host.
+ *
+ * <p>This converts internationalised labels to ASCII (punycode), normalises to lowercase, wraps a
+ * bare IPv6 address with brackets and percent-encodes only characters which are not allowed in
+ * reg-name of RFC 3986. Results are cached because the set of hosts is usually small and {@link
+ * IDN#toASCII(String)} is expensive; the cache is lock-free and is cleared when it is full.
+ */
+class HostEntityURLEncoder implements EntityURLEncoder {
+  private static final int CACHE_CAPACITY = 1024;
+
+  private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+  @Override
+  public String encode(@NonNull Object input) {
+    final String host = input.toString();
+    final String cached = CACHE.get(host);
+    if (cached != null) {
+      return cached;
+    }
+
+    final String encoded = encodeHost(host);
+    if (CACHE.size() >= CACHE_CAPACITY) {
+      // cheaper than tracking recency; a working set of hosts is filled again soon
+      CACHE.clear();
+    }
+    CACHE.put(host, encoded);
+    return encoded;
+  }
+
+  static String encodeHost(String host) {
+    if (host.isEmpty()) {
+      return host;
+    }
+
+    if (host.charAt(0) == '[' && host.charAt(host.length() - 1) == ']') { // IPv6 literal
+      return host.toLowerCase(Locale.ROOT);
+    }
+    if (host.indexOf(':') != host.lastIndexOf(':')) { // bare IPv6 address
+      return "[" + host.toLowerCase(Locale.ROOT) + "]";
+    }
+
+    String ascii = host;
+    for (int i = 0; i < host.length(); i++) {
+      if (host.charAt(i) >= 0x80) {
+        ascii = IDN.toASCII(host, IDN.ALLOW_UNASSIGNED);
+        break;
+      }
+    }
+    ascii = ascii.toLowerCase(Locale.ROOT);
+
+    StringBuilder sb = null;
+    for (int i = 0; i < ascii.length(); i++) {
+      final char c = ascii.charAt(i);
+      if (isRegNameChar(c)) {
+        if (sb != null) {
+          sb.append(c);
+        }
+        continue;
+      }
+
+      if (sb == null) {
+        sb = new StringBuilder(ascii.length() + 8).append(ascii, 0, i);
+      }
+      sb.append('%')
+          .append(ConcreteEntityURLEncoder.HEX[(c >> 4) & 0x0F])
+          .append(ConcreteEntityURLEncoder.HEX[c & 0x0F]);
+    }
+    return sb == null ? ascii : sb.toString();
+  }
+
+  /** unreserved / sub-delims; characters of reg-name except pct-encoded. */
+  private static boolean isRegNameChar(char c) {
+    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+      return true;
+    }
+    switch (c) {
+      case '-':
+      case '.':
+      case '_':
+      case '~':
+      case '!':
+      case '$':
+      case '&':
+      case '\'':
+      case '(':
+      case ')':
+      case '*':
+      case '+':
+      case ',':
+      case ';':
+      case '=':
+        return true;
+      default:
+        return false;
+    }
+  }
+}
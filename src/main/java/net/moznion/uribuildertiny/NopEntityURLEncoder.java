@@ -7,4 +7,38 @@ class NopEntityURLEncoder implements EntityURLEncoder {
   public String encode(@NonNull Object input) {
     return input.toString();
   }
+
+  @Override
+  public EntitySink sinkOf(StringBuilder out) {
+    return new PassThroughEntitySink(out);
+  }
+
+  private static class PassThroughEntitySink implements EntitySink {
+    private final StringBuilder out;
+
+    PassThroughEntitySink(StringBuilder out) {
+      this.out = out;
+    }
+
+    @Override
+    public EntitySink append(CharSequence csq) {
+      out.append(csq);
+      return this;
+    }
+
+    @Override
+    public EntitySink append(CharSequence csq, int start, int end) {
+      out.append(csq, start, end);
+      return this;
+    }
+
+    @Override
+    public EntitySink append(char c) {
+      out.append(c);
+      return this;
+    }
+
+    @Override
+    public void finish() {}
+  }
 }
@@ -0,0 +1,79 @@
+package net.moznion.uribuildertiny;
+
+import java.nio.charset.StandardCharsets;
+
+/** Decoder of percent-encoded UTF-8; the reverse of {@link UTF8PercentEncoder}. */
+final class PercentDecoder {
+  private PercentDecoder() {}
+
+  /**
+   * Decode a region of the string.
+   *
+   * <p>A "%" which is not followed by two hex digits is left as is, and malformed UTF-8 sequences
+   * are replaced with U+FFFD.
+   *
+   * @param s string which contains the region
+   * @param start beginning index of the region, inclusive
+   * @param end ending index of the region, exclusive
+   * @param plusAsSpace whether "+" is decoded as space (true for query; false for path)
+   * @return decoded string
+   */
+  static String decode(String s, int start, int end, boolean plusAsSpace) {
+    int i = start;
+    while (i < end) {
+      final char c = s.charAt(i);
+      if (c == '%' || (plusAsSpace && c == '+')) {
+        break;
+      }
+      i++;
+    }
+    if (i == end) {
+      return s.substring(start, end);
+    }
+
+    final byte[] bytes = new byte[(end - start) * 3]; // each char is 3 bytes at most in UTF-8
+    int pos = 0;
+    i = start;
+    while (i < end) {
+      final char c = s.charAt(i);
+      if (c == '%' && i + 2 < end) {
+        final int hi = hexValue(s.charAt(i + 1));
+        final int lo = hexValue(s.charAt(i + 2));
+        if (hi >= 0 && lo >= 0) {
+          bytes[pos++] = (byte) ((hi << 4) | lo);
+          i += 3;
+          continue;
+        }
+      }
+      if (c < 0x80) {
+        bytes[pos++] = (byte) (c == '+' && plusAsSpace ? ' ' : c);
+        i++;
+        continue;
+      }
+
+      // raw non-ASCII characters; keep surrogate pairs together
+      int runEnd = i + 1;
+      while (runEnd < end && s.charAt(runEnd) >= 0x80) {
+        runEnd++;
+      }
+      final byte[] encoded = s.substring(i, runEnd).getBytes(StandardCharsets.UTF_8);
+      System.arraycopy(encoded, 0, bytes, pos, encoded.length);
+      pos += encoded.length;
+      i = runEnd;
+    }
+    return new String(bytes, 0, pos, StandardCharsets.UTF_8);
+  }
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    return -1;
+  }
+}
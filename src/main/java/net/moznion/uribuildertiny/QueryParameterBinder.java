@@ -0,0 +1,243 @@
+package net.moznion.uribuildertiny;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Binder of bean properties to query parameters.
+ *
+ * <p>Accessors of a class are resolved by reflection only once and cached in {@link ClassValue}.
+ * A getter which this class can access is spun into a {@link Function} by {@link
+ * LambdaMetafactory}, so binding calls the getter directly as hand-written code does; a field, or
+ * a getter of a class which isn't accessible from here, falls back to a {@link MethodHandle}.
+ * Properties are resolved in this order:
+ *
+ * <ol>
+ *   <li>components of a record (accessor methods which have the same name as fields)
+ *   <li>public getters ({@code getFoo()}, or {@code isFoo()} which returns boolean)
+ *   <li>public fields
+ * </ol>
+ *
+ * <p>A property whose value is null is skipped. Keys which consist of unreserved characters are
+ * same in any charset, so only the others are encoded on binding.
+ */
+final class QueryParameterBinder {
+  private static final ClassValue<QueryParameterBinder> BINDERS =
+      new ClassValue<QueryParameterBinder>() {
+        @Override
+        protected QueryParameterBinder computeValue(Class<?> type) {
+          return new QueryParameterBinder(type);
+        }
+      };
+
+  private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType FACTORY_TYPE = MethodType.methodType(Function.class);
+
+  private final String[] propertyNames;
+  private final String[] encodedKeys; // null if the key needs encoding
+  private final Function<Object, Object>[] accessors;
+
+  private QueryParameterBinder(Class<?> type) {
+    final List<String> keys = new ArrayList<>();
+    final List<Function<Object, Object>> functions = new ArrayList<>();
+
+    if (type.getSuperclass() != null && "java.lang.Record".equals(type.getSuperclass().getName())) {
+      for (Field field : type.getDeclaredFields()) {
+        if (Modifier.isStatic(field.getModifiers())) {
+          continue;
+        }
+        try {
+          addAccessor(keys, functions, type, field.getName(), type.getMethod(field.getName()));
+        } catch (NoSuchMethodException e) {
+          // not a record component
+        }
+      }
+    } else {
+      for (Method method : type.getMethods()) {
+        final String propertyName = propertyNameOf(method);
+        if (propertyName != null) {
+          addAccessor(keys, functions, type, propertyName, method);
+        }
+      }
+      if (keys.isEmpty()) {
+        for (Field field : type.getFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            addAccessor(keys, functions, type, field.getName(), field);
+          }
+        }
+      }
+    }
+
+    propertyNames = keys.toArray(new String[0]);
+    encodedKeys = new String[propertyNames.length];
+    for (int i = 0; i < propertyNames.length; i++) {
+      final String key = propertyNames[i];
+      if (UTF8PercentEncodingSink.skipUnreserved(key, 0, key.length()) == key.length()) {
+        encodedKeys[i] = key;
+      }
+    }
+    @SuppressWarnings("unchecked")
+    final Function<Object, Object>[] accessors = functions.toArray(new Function[0]);
+    this.accessors = accessors;
+  }
+
+  static QueryParameterBinder of(Class<?> type) {
+    return BINDERS.get(type);
+  }
+
+  /**
+   * Put the properties of the bean into the query parameters.
+   *
+   * @param bean bean whose class is the one of this binder
+   * @param queryParameters destination; keys are percent-encoded
+   * @param urlEncoder encoder for keys and values
+   */
+  void bind(Object bean, Map<String, Object> queryParameters, URLEncoder urlEncoder) {
+    for (int i = 0; i < accessors.length; i++) {
+      final Object value = accessors[i].apply(bean);
+      if (value != null) {
+        final String key = encodedKeys[i];
+        queryParameters.put(
+            key != null ? key : urlEncoder.encode(propertyNames[i]),
+            urlEncoder.encodeOrDefer(value));
+      }
+    }
+  }
+
+  private static String propertyNameOf(Method method) {
+    if (Modifier.isStatic(method.getModifiers())
+        || method.getParameterCount() != 0
+        || method.getDeclaringClass() == Object.class) {
+      return null;
+    }
+
+    final String name = method.getName();
+    if (name.startsWith("get") && name.length() > 3 && method.getReturnType() != void.class) {
+      return decapitalize(name.substring(3));
+    }
+    if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+      return decapitalize(name.substring(2));
+    }
+    return null;
+  }
+
+  /** Same as {@code java.beans.Introspector#decapitalize()}; "FooBar" to "fooBar", "URL" as is. */
+  private static String decapitalize(String name) {
+    if (name.length() > 1
+        && Character.isUpperCase(name.charAt(1))
+        && Character.isUpperCase(name.charAt(0))) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private static void addAccessor(
+      List<String> keys,
+      List<Function<Object, Object>> functions,
+      Class<?> type,
+      String key,
+      AccessibleObject accessor) {
+    if (accessor instanceof Method) {
+      final Function<Object, Object> function = spinGetter(type, (Method) accessor);
+      if (function != null) {
+        keys.add(key);
+        functions.add(function);
+        return;
+      }
+    }
+
+    try {
+      accessor.setAccessible(true); // for a non-public class
+    } catch (RuntimeException e) {
+      // e.g. a class in a module which is not open; try to access publicly
+    }
+
+    final MethodHandle handle;
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      handle =
+          accessor instanceof Method
+              ? lookup.unreflect((Method) accessor)
+              : lookup.unreflectGetter((Field) accessor);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Cannot access the property: " + key, e);
+    }
+
+    keys.add(key);
+    functions.add(invokerOf(handle.asType(ACCESSOR_TYPE)));
+  }
+
+  /**
+   * Returns a {@link Function} which calls the getter directly, or null if the getter can't be
+   * linked from this class (e.g. the class is not public, or not visible from the class loader of
+   * this library).
+   */
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> spinGetter(Class<?> type, Method getter) {
+    final Class<?> returnType = getter.getReturnType();
+    if (!isVisible(type) || !isVisible(returnType)) {
+      return null;
+    }
+
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      // resolved through the type, with access checks, as the spun class does
+      final MethodHandle handle =
+          lookup.findVirtual(type, getter.getName(), MethodType.methodType(returnType));
+      final CallSite site =
+          LambdaMetafactory.metafactory(
+              lookup,
+              "apply",
+              FACTORY_TYPE,
+              ACCESSOR_TYPE,
+              handle,
+              MethodType.methodType(returnType, type).wrap());
+      return (Function<Object, Object>) site.getTarget().invokeExact();
+    } catch (NoSuchMethodException | IllegalAccessException | LambdaConversionException e) {
+      return null;
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static boolean isVisible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    try {
+      return Class.forName(type.getName(), false, QueryParameterBinder.class.getClassLoader())
+          == type;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static Function<Object, Object> invokerOf(MethodHandle handle) {
+    return bean -> {
+      try {
+        return handle.invokeExact(bean);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+}
@@ -0,0 +1,206 @@
+package net.moznion.uribuildertiny;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Declared query parameters of URIs which are built repeatedly with the same shape.
+ *
+ * <p>A schema is created once with parameter names in output order, and their keys are
+ * percent-encoded at that time. A builder created by {@link #newBuilder()} holds values of the
+ * declared parameters in an array indexed by slot; they are set by {@link
+ * URIBuilderTiny#setDeclaredQueryParameter(int, Object)} or {@link
+ * URIBuilderTiny#setDeclaredQueryParameter(Parameter, Object)}, and building copies the
+ * pre-encoded {@code key=} fragments in the declared order without looking up or sorting keys. A
+ * slot without value is omitted. Other query parameters can be added as usual; they follow the
+ * declared ones, and a parameter whose key is declared is stored into its slot.
+ *
+ * <pre>{@code
+ * QueryParameterSchema schema = QueryParameterSchema.of("q", "page", "limit");
+ * QueryParameterSchema.Parameter<Integer> page = schema.parameter("page", Integer.class);
+ *
+ * URI uri = schema.newBuilder("https://example.com/search")
+ *     .setDeclaredQueryParameter(0, "foo bar")
+ *     .setDeclaredQueryParameter(page, 2)
+ *     .build(); // https://example.com/search?q=foo+bar&page=2
+ * }</pre>
+ *
+ * <p>An instance is immutable and thread-safe.
+ */
+public final class QueryParameterSchema {
+  /** Charset to percent-encode keys, and values of builders created from this schema. */
+  @Getter private final Charset charset;
+
+  private final List<String> names;
+  private final String[] encodedNames;
+  private final String[] encodedKeys; // "key="
+  private final Map<String, Integer> slots;
+  private final Map<String, Integer> slotsByEncodedName;
+
+  private QueryParameterSchema(Charset charset, String[] names) {
+    this.charset = charset;
+    this.names = Collections.unmodifiableList(Arrays.asList(names.clone()));
+
+    final ConcreteEntityURLEncoder keyEncoder = new ConcreteEntityURLEncoder(charset);
+    encodedNames = new String[names.length];
+    encodedKeys = new String[names.length];
+    slots = new HashMap<>();
+    slotsByEncodedName = new HashMap<>();
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == null) {
+        throw new NullPointerException("names[" + i + "] is null");
+      }
+      if (slots.put(names[i], i) != null) {
+        throw new IllegalArgumentException("Duplicated parameter name: " + names[i]);
+      }
+      encodedNames[i] = keyEncoder.encode(names[i]);
+      encodedKeys[i] = encodedNames[i] + "=";
+      slotsByEncodedName.put(encodedNames[i], i);
+    }
+  }
+
+  /**
+   * Create a schema whose keys and values are percent-encoded as UTF-8.
+   *
+   * @param names parameter names in output order
+   * @throws IllegalArgumentException if a name is duplicated
+   */
+  public static QueryParameterSchema of(@NonNull String... names) {
+    return of(StandardCharsets.UTF_8, names);
+  }
+
+  /**
+   * Create a schema.
+   *
+   * @param charset charset to percent-encode keys and values
+   * @param names parameter names in output order
+   * @throws IllegalArgumentException if a name is duplicated
+   */
+  public static QueryParameterSchema of(@NonNull Charset charset, @NonNull String... names) {
+    return new QueryParameterSchema(charset, names);
+  }
+
+  /** Returns the number of declared parameters. */
+  public int size() {
+    return encodedKeys.length;
+  }
+
+  /** Returns parameter names in output order. */
+  public List<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Returns the slot index of the parameter.
+   *
+   * @throws IllegalArgumentException if the parameter is not declared
+   */
+  public int slotOf(@NonNull String name) {
+    final Integer slot = slots.get(name);
+    if (slot == null) {
+      throw new IllegalArgumentException("Undeclared parameter: " + name);
+    }
+    return slot;
+  }
+
+  /**
+   * Get a typed handle of the parameter; it should be kept with the schema (e.g. as a constant).
+   *
+   * @param name parameter name
+   * @param type type of values
+   * @throws IllegalArgumentException if the parameter is not declared
+   */
+  public <T> Parameter<T> parameter(@NonNull String name, @NonNull Class<T> type) {
+    return new Parameter<>(this, name, slotOf(name));
+  }
+
+  /** Create a new empty builder which is bound to this schema. */
+  public URIBuilderTiny newBuilder() {
+    return new URIBuilderTiny(charset).bindSchema(this);
+  }
+
+  /**
+   * Create a new builder which is bound to this schema according to passed URI string.
+   *
+   * <p>Query parameters of the URI string whose keys are declared are stored into their slots, and
+   * the others are kept as parameters out of the schema.
+   */
+  public URIBuilderTiny newBuilder(@NonNull String uriString) {
+    return new URIBuilderTiny(uriString, charset).bindSchema(this);
+  }
+
+  /**
+   * Create a new builder which is bound to this schema according to passed URI instance.
+   *
+   * <p>Query parameters of the URI whose keys are declared are stored into their slots, and the
+   * others are kept as parameters out of the schema.
+   */
+  public URIBuilderTiny newBuilder(@NonNull URI uri) {
+    return new URIBuilderTiny(uri, charset).bindSchema(this);
+  }
+
+  /** Returns the percent-encoded key of the slot. */
+  String encodedNameOf(int slot) {
+    return encodedNames[slot];
+  }
+
+  /** Returns the slot of the percent-encoded key, or -1 if it is not declared. */
+  int slotOfEncodedName(String encodedName) {
+    final Integer slot = slotsByEncodedName.get(encodedName);
+    return slot == null ? -1 : slot;
+  }
+
+  /** Returns the percent-encoded key of the slot followed by "=". */
+  String encodedKeyOf(int slot) {
+    return encodedKeys[slot];
+  }
+
+  @Override
+  public String toString() {
+    return "QueryParameterSchema(" + names + ")";
+  }
+
+  /**
+   * Typed handle of a declared parameter.
+   *
+   * @param <T> type of values
+   */
+  public static final class Parameter<T> {
+    private final QueryParameterSchema schema;
+    private final String name;
+    private final int slot;
+
+    private Parameter(QueryParameterSchema schema, String name, int slot) {
+      this.schema = schema;
+      this.name = name;
+      this.slot = slot;
+    }
+
+    /** Returns the parameter name. */
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the slot index in the schema. */
+    public int getSlot() {
+      return slot;
+    }
+
+    QueryParameterSchema getSchema() {
+      return schema;
+    }
+
+    @Override
+    public String toString() {
+      return "Parameter(" + name + ")";
+    }
+  }
+}
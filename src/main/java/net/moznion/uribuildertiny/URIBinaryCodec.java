@@ -0,0 +1,356 @@
+package net.moznion.uribuildertiny;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+
+/**
+ * Compact binary codec of components of {@link URIBuilderTiny}.
+ *
+ * <p>A record holds scheme, host, port, paths, query parameters, fragment and the flag of
+ * trailing slash as they are in the builder (percent-encoded unless they are set as raw string):
+ *
+ * <pre>
+ * record    = version(1 byte) flags(1 byte) [scheme] [host] [port] [paths] [query] [fragment]
+ * paths     = varint(count) string*
+ * query     = varint(count) (string string)*
+ * string    = varint(prefix) varint(length &lt;&lt; 1 | non-ASCII) bytes
+ * </pre>
+ *
+ * <p>Absent components are omitted by the flags. Integers are unsigned LEB128 varints, and the port
+ * is stored as is. Each string is split into the longest entry of the prefix dictionary
+ * ({@code prefix} is its index plus one, or zero if none) and the rest, which is stored as ASCII
+ * bytes, or as UTF-8 if it contains non-ASCII characters; a lone surrogate is stored as "?". A
+ * record doesn't contain the dictionary; the reader must use a codec with the same dictionary as
+ * the writer.
+ *
+ * <p>An instance is immutable and thread-safe.
+ */
+public final class URIBinaryCodec {
+  static final int VERSION = 1;
+
+  static final int SCHEME = 1;
+  static final int HOST = 1 << 1;
+  static final int PORT = 1 << 2;
+  static final int PATHS = 1 << 3;
+  static final int QUERY = 1 << 4;
+  static final int FRAGMENT = 1 << 5;
+  static final int FORCE_REMOVE_TRAILING_SLASH = 1 << 6;
+
+  private static final List<String> DEFAULT_DICTIONARY =
+      Collections.unmodifiableList(
+          Arrays.asList("https", "http", "www.", "api.", "cdn.", "static.", ".com", "index.html"));
+
+  private final List<String> dictionary;
+  private final int[] prefixIndicesByLength; // indices of dictionary; the longest first
+
+  /** Create instance with the default prefix dictionary of common schemes and host labels. */
+  public URIBinaryCodec() {
+    this(DEFAULT_DICTIONARY);
+  }
+
+  /**
+   * Create instance with a prefix dictionary.
+   *
+   * @param dictionary prefixes of components; e.g. hosts and top-level paths of your services. The
+   *     order must not be changed once records are written.
+   */
+  public URIBinaryCodec(@NonNull List<String> dictionary) {
+    this.dictionary = Collections.unmodifiableList(new ArrayList<>(dictionary));
+
+    final Integer[] indices = new Integer[this.dictionary.size()];
+    for (int i = 0; i < indices.length; i++) {
+      if (this.dictionary.get(i).isEmpty()) {
+        throw new IllegalArgumentException("Prefix must not be empty");
+      }
+      indices[i] = i;
+    }
+    Arrays.sort(
+        indices, (a, b) -> this.dictionary.get(b).length() - this.dictionary.get(a).length());
+    prefixIndicesByLength = new int[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      prefixIndicesByLength[i] = indices[i];
+    }
+  }
+
+  /** Returns the prefix dictionary. */
+  public List<String> getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Encode components of the builder into a new buffer.
+   *
+   * @param builder builder to encode; it is not changed
+   * @return buffer which is ready to read (position is 0 and limit is the length of the record)
+   */
+  public ByteBuffer encode(@NonNull URIBuilderTiny builder) {
+    final Components components = new Components(builder);
+    final ByteBuffer buffer = ByteBuffer.allocate(components.encodedLength());
+    components.writeTo(buffer);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Encode components of the builder at the position of the buffer.
+   *
+   * <p>The position is advanced by the length of the record, so records can be written one after
+   * another.
+   *
+   * @param builder builder to encode; it is not changed
+   * @param buffer destination; heap or direct
+   * @throws BufferOverflowException if the buffer doesn't have enough space; nothing is written in
+   *     that case
+   */
+  public void encode(@NonNull URIBuilderTiny builder, @NonNull ByteBuffer buffer) {
+    final Components components = new Components(builder);
+    if (buffer.remaining() < components.encodedLength()) {
+      throw new BufferOverflowException();
+    }
+    components.writeTo(buffer);
+  }
+
+  /**
+   * Returns the length of the record of the builder in bytes.
+   *
+   * @param builder builder to encode; it is not changed
+   * @return length in bytes
+   */
+  public int encodedLength(@NonNull URIBuilderTiny builder) {
+    return new Components(builder).encodedLength();
+  }
+
+  /**
+   * Decode a record at the position of the buffer into a new builder.
+   *
+   * <p>Components are set as raw strings since they are percent-encoded already. The position is
+   * advanced to the next record.
+   *
+   * @param buffer source
+   * @return new builder which encodes as UTF-8
+   * @throws IllegalArgumentException if the record is malformed
+   */
+  public URIBuilderTiny decode(@NonNull ByteBuffer buffer) {
+    return view(buffer).toBuilder();
+  }
+
+  /**
+   * Get a view of a record at the position of the buffer.
+   *
+   * <p>The view reads components directly from the buffer without copying the record. The position
+   * is advanced to the next record.
+   *
+   * @param buffer source; its content must not be changed while the view is used
+   * @return view of the record
+   * @throws IllegalArgumentException if the record is malformed
+   */
+  public URIBinaryView view(@NonNull ByteBuffer buffer) {
+    try {
+      return new URIBinaryView(this, buffer);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated record", e);
+    }
+  }
+
+  String prefixOf(int prefixRef) {
+    if (prefixRef < 1 || prefixRef > dictionary.size()) {
+      throw new IllegalArgumentException(
+          "Unknown prefix " + prefixRef + "; the dictionary may be different from the writer's");
+    }
+    return dictionary.get(prefixRef - 1);
+  }
+
+  static int readVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      final byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  private static void writeVarint(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static int varintLength(int value) {
+    int length = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+
+  /** Components of a builder which are snapshotted with their prefixes resolved. */
+  private final class Components {
+    private final int flags;
+    private final String[] strings; // scheme, host, paths, query keys and values, fragment in order
+    private final int[] prefixRefs;
+    private final byte[][] utf8Bytes; // UTF-8 of the rest after the prefix; null if it is ASCII
+    private final int port;
+    private final int pathCount;
+    private final int queryCount;
+
+    private Components(URIBuilderTiny builder) {
+      final List<String> paths = builder.getPaths();
+      final Map<String, String> queryParameters = builder.getQueryParameters();
+      final List<String> strings = new ArrayList<>(paths.size() + queryParameters.size() * 2 + 3);
+
+      int flags = 0;
+      if (!builder.getScheme().isEmpty()) {
+        flags |= SCHEME;
+        strings.add(builder.getScheme());
+      }
+      if (!builder.getHost().isEmpty()) {
+        flags |= HOST;
+        strings.add(builder.getHost());
+      }
+      port = builder.getPort();
+      if (port >= 0) {
+        flags |= PORT;
+      }
+      pathCount = paths.size();
+      if (pathCount > 0) {
+        flags |= PATHS;
+        strings.addAll(paths);
+      }
+      queryCount = queryParameters.size();
+      if (queryCount > 0) {
+        flags |= QUERY;
+        for (Map.Entry<String, String> queryParameter : queryParameters.entrySet()) {
+          strings.add(queryParameter.getKey());
+          strings.add(queryParameter.getValue());
+        }
+      }
+      final String fragment = builder.getFragment();
+      if (!fragment.isEmpty()) {
+        flags |= FRAGMENT;
+        strings.add(fragment);
+      }
+      if (builder.isForceRemoveTrailingSlash()) {
+        flags |= FORCE_REMOVE_TRAILING_SLASH;
+      }
+
+      this.flags = flags;
+      this.strings = strings.toArray(new String[0]);
+      prefixRefs = new int[this.strings.length];
+      utf8Bytes = new byte[this.strings.length][];
+      for (int i = 0; i < prefixRefs.length; i++) {
+        final String s = this.strings[i];
+        prefixRefs[i] = findPrefixRef(s);
+        final int start = restStartOf(i);
+        if (!isASCII(s, start)) {
+          utf8Bytes[i] = s.substring(start).getBytes(StandardCharsets.UTF_8);
+        }
+      }
+    }
+
+    /** Returns the index where the rest after the prefix starts. */
+    private int restStartOf(int i) {
+      return prefixRefs[i] == 0 ? 0 : dictionary.get(prefixRefs[i] - 1).length();
+    }
+
+    private int findPrefixRef(String s) {
+      for (int index : prefixIndicesByLength) {
+        if (s.startsWith(dictionary.get(index))) {
+          return index + 1;
+        }
+      }
+      return 0;
+    }
+
+    private int encodedLength() {
+      int length = 2;
+      if ((flags & PORT) != 0) {
+        length += varintLength(port);
+      }
+      if ((flags & PATHS) != 0) {
+        length += varintLength(pathCount);
+      }
+      if ((flags & QUERY) != 0) {
+        length += varintLength(queryCount);
+      }
+      for (int i = 0; i < strings.length; i++) {
+        final int byteLength =
+            utf8Bytes[i] == null ? strings[i].length() - restStartOf(i) : utf8Bytes[i].length;
+        length += varintLength(prefixRefs[i]) + varintLength(byteLength << 1) + byteLength;
+      }
+      return length;
+    }
+
+    private void writeTo(ByteBuffer buffer) {
+      buffer.put((byte) VERSION).put((byte) flags);
+
+      int i = 0;
+      if ((flags & SCHEME) != 0) {
+        writeString(buffer, i++);
+      }
+      if ((flags & HOST) != 0) {
+        writeString(buffer, i++);
+      }
+      if ((flags & PORT) != 0) {
+        writeVarint(buffer, port);
+      }
+      if ((flags & PATHS) != 0) {
+        writeVarint(buffer, pathCount);
+        for (int j = 0; j < pathCount; j++) {
+          writeString(buffer, i++);
+        }
+      }
+      if ((flags & QUERY) != 0) {
+        writeVarint(buffer, queryCount);
+        for (int j = 0; j < queryCount * 2; j++) {
+          writeString(buffer, i++);
+        }
+      }
+      if ((flags & FRAGMENT) != 0) {
+        writeString(buffer, i);
+      }
+    }
+
+    private void writeString(ByteBuffer buffer, int i) {
+      writeVarint(buffer, prefixRefs[i]);
+
+      final byte[] bytes = utf8Bytes[i];
+      if (bytes == null) {
+        final String s = strings[i];
+        final int start = restStartOf(i);
+        final int length = s.length();
+        writeVarint(buffer, (length - start) << 1);
+        for (int j = start; j < length; j++) {
+          buffer.put((byte) s.charAt(j));
+        }
+        return;
+      }
+
+      writeVarint(buffer, bytes.length << 1 | 1);
+      buffer.put(bytes);
+    }
+  }
+
+  private static boolean isASCII(String s, int start) {
+    final int length = s.length();
+    for (int i = start; i < length; i++) {
+      if (s.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
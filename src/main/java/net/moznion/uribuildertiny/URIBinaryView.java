@@ -0,0 +1,282 @@
+package net.moznion.uribuildertiny;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * View of a record of {@link URIBinaryCodec}.
+ *
+ * <p>Creating a view finds only the offsets of strings in the record. Each component is returned as
+ * a {@link CharSequence} which reads characters directly from the buffer; it is copied only when
+ * {@link Object#toString()} is called. A string which contains non-ASCII characters is decoded
+ * from UTF-8 on access instead.
+ */
+public final class URIBinaryView {
+  private static final int SLOT = 3; // prefix reference, offset of bytes, (length << 1 | UTF-8)
+
+  private final URIBinaryCodec codec;
+  private final ByteBuffer buffer;
+  private final int flags;
+
+  /** Port number, or -1 if absent. */
+  @Getter private final int port;
+
+  /** Length of the record in bytes. */
+  @Getter private final int encodedLength;
+
+  private int[] strings;
+  private int stringCount;
+  private final int schemeIndex; // index in strings, or -1 if absent
+  private final int hostIndex;
+  private final int pathStart;
+  private final int pathCount;
+  private final int queryStart;
+  private final int queryCount;
+  private final int fragmentIndex;
+
+  URIBinaryView(URIBinaryCodec codec, ByteBuffer source) {
+    this.codec = codec;
+    buffer = source.duplicate();
+
+    final int recordStart = source.position();
+    final int version = source.get() & 0xFF;
+    if (version != URIBinaryCodec.VERSION) {
+      throw new IllegalArgumentException("Unsupported version: " + version);
+    }
+    flags = source.get() & 0xFF;
+
+    strings = new int[SLOT * 8];
+    schemeIndex = hasFlag(URIBinaryCodec.SCHEME) ? readString(source) : -1;
+    hostIndex = hasFlag(URIBinaryCodec.HOST) ? readString(source) : -1;
+    port = hasFlag(URIBinaryCodec.PORT) ? URIBinaryCodec.readVarint(source) : -1;
+
+    pathStart = stringCount;
+    pathCount = hasFlag(URIBinaryCodec.PATHS) ? readCount(source) : 0;
+    for (int i = 0; i < pathCount; i++) {
+      readString(source);
+    }
+
+    queryStart = stringCount;
+    queryCount = hasFlag(URIBinaryCodec.QUERY) ? readCount(source) : 0;
+    for (int i = 0; i < queryCount * 2; i++) {
+      readString(source);
+    }
+
+    fragmentIndex = hasFlag(URIBinaryCodec.FRAGMENT) ? readString(source) : -1;
+    encodedLength = source.position() - recordStart;
+  }
+
+  private boolean hasFlag(int flag) {
+    return (flags & flag) != 0;
+  }
+
+  private static int readCount(ByteBuffer source) {
+    final int count = URIBinaryCodec.readVarint(source);
+    if (count < 0 || count > source.remaining()) {
+      throw new IllegalArgumentException("Malformed count: " + count);
+    }
+    return count;
+  }
+
+  private int readString(ByteBuffer source) {
+    final int prefixRef = URIBinaryCodec.readVarint(source);
+    if (prefixRef != 0) {
+      codec.prefixOf(prefixRef); // validate
+    }
+    final int lengthAndFlag = URIBinaryCodec.readVarint(source);
+    final int length = lengthAndFlag >>> 1;
+    if (length > source.remaining()) {
+      throw new IllegalArgumentException("Malformed length: " + length);
+    }
+
+    if ((stringCount + 1) * SLOT > strings.length) {
+      strings = Arrays.copyOf(strings, strings.length * 2);
+    }
+    final int slot = stringCount * SLOT;
+    strings[slot] = prefixRef;
+    strings[slot + 1] = source.position();
+    strings[slot + 2] = lengthAndFlag;
+    source.position(source.position() + length);
+    return stringCount++;
+  }
+
+  private CharSequence stringAt(int index) {
+    if (index < 0) {
+      return "";
+    }
+
+    final int slot = index * SLOT;
+    final String prefix = strings[slot] == 0 ? "" : codec.prefixOf(strings[slot]);
+    final int offset = strings[slot + 1];
+    final int length = strings[slot + 2] >>> 1;
+    if ((strings[slot + 2] & 1) != 0) {
+      final byte[] bytes = new byte[length];
+      final ByteBuffer source = buffer.duplicate();
+      source.position(offset);
+      source.get(bytes);
+      return prefix + new String(bytes, StandardCharsets.UTF_8);
+    }
+    if (length == 0) {
+      return prefix;
+    }
+    return new ASCIIView(prefix, buffer, offset, length);
+  }
+
+  /** Returns the scheme; empty if absent. */
+  public CharSequence getScheme() {
+    return stringAt(schemeIndex);
+  }
+
+  /** Returns the host; empty if absent. */
+  public CharSequence getHost() {
+    return stringAt(hostIndex);
+  }
+
+  /** Returns the number of paths. */
+  public int getPathCount() {
+    return pathCount;
+  }
+
+  /** Returns the i-th path. */
+  public CharSequence getPath(int i) {
+    return stringAt(pathStart + checkIndex(i, pathCount));
+  }
+
+  /** Returns the number of query parameters. */
+  public int getQueryParameterCount() {
+    return queryCount;
+  }
+
+  /** Returns the key of the i-th query parameter; parameters are sorted by keys. */
+  public CharSequence getQueryKey(int i) {
+    return stringAt(queryStart + checkIndex(i, queryCount) * 2);
+  }
+
+  /** Returns the value of the i-th query parameter. */
+  public CharSequence getQueryValue(int i) {
+    return stringAt(queryStart + checkIndex(i, queryCount) * 2 + 1);
+  }
+
+  /**
+   * Find a query parameter without copying keys.
+   *
+   * @param key percent-encoded key
+   * @return value, or null if absent
+   */
+  public CharSequence getQueryParameter(@NonNull CharSequence key) {
+    for (int i = 0; i < queryCount; i++) {
+      if (contentEquals(getQueryKey(i), key)) {
+        return getQueryValue(i);
+      }
+    }
+    return null;
+  }
+
+  /** Returns the fragment; empty if absent. */
+  public CharSequence getFragment() {
+    return stringAt(fragmentIndex);
+  }
+
+  /** Returns true if trailing slash is forcibly removed. */
+  public boolean isForceRemoveTrailingSlash() {
+    return hasFlag(URIBinaryCodec.FORCE_REMOVE_TRAILING_SLASH);
+  }
+
+  /**
+   * Create a builder which has the components of this record as raw strings.
+   *
+   * @return new builder which encodes as UTF-8
+   */
+  public URIBuilderTiny toBuilder() {
+    final URIBuilderTiny builder = new URIBuilderTiny();
+    if (schemeIndex >= 0) {
+      builder.setScheme(getScheme().toString());
+    }
+    if (hostIndex >= 0) {
+      builder.setRawHost(getHost().toString());
+    }
+    builder.setPort(port);
+
+    final Object[] paths = new Object[pathCount];
+    for (int i = 0; i < pathCount; i++) {
+      paths[i] = getPath(i).toString();
+    }
+    builder.setRawPaths(paths);
+
+    for (int i = 0; i < queryCount; i++) {
+      builder.addRawQueryParameter(getQueryKey(i).toString(), getQueryValue(i).toString());
+    }
+    if (fragmentIndex >= 0) {
+      builder.setRawFragment(getFragment().toString());
+    }
+    return builder.forceRemoveTrailingSlash(isForceRemoveTrailingSlash());
+  }
+
+  private static int checkIndex(int i, int count) {
+    if (i < 0 || i >= count) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", count: " + count);
+    }
+    return i;
+  }
+
+  private static boolean contentEquals(CharSequence a, CharSequence b) {
+    final int length = a.length();
+    if (length != b.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (a.charAt(i) != b.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Characters of a dictionary prefix followed by ASCII bytes in the buffer. */
+  private static final class ASCIIView implements CharSequence {
+    private final String prefix;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    private ASCIIView(String prefix, ByteBuffer buffer, int offset, int length) {
+      this.prefix = prefix;
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return prefix.length() + length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < prefix.length()) {
+        return prefix.charAt(index);
+      }
+      if (index >= length()) {
+        throw new IndexOutOfBoundsException("Index: " + index);
+      }
+      return (char) (buffer.get(offset + index - prefix.length()) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      final byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(offset + i);
+      }
+      return prefix + new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+  }
+}
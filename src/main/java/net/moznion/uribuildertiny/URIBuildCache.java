@@ -0,0 +1,276 @@
+package net.moznion.uribuildertiny;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of built URIs; see {@link URIBuilderTinyProviderWithBase#withCache(int)}.
+ *
+ * <p>Entries are keyed by the inputs of components of a builder. A lookup hashes the inputs and
+ * compares them with the stored key in place, so it copies nothing. Reads take no lock; a hit only
+ * marks the entry as referenced. When the cache is full, entries are evicted in the CLOCK (second
+ * chance) order: the oldest entry which isn't referenced since the last sweep goes first, which
+ * approximates the least recently used one.
+ */
+public final class URIBuildCache {
+  private final int maximumSize;
+  private final ConcurrentHashMap<Key, Node> map = new ConcurrentHashMap<>();
+  private final Queue<Key> clock = new ConcurrentLinkedQueue<>(); // guarded by itself on eviction
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * Create an empty cache.
+   *
+   * @param maximumSize maximum number of URIs
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  public URIBuildCache(int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Get the URI which is built by the builder from the cache, or build and cache it.
+   *
+   * <p>A builder which has a component which can't be a part of the key (e.g. a mutable {@link
+   * CharSequence}) is always built and not cached.
+   */
+  URI build(URIBuilderTiny builder) {
+    final Probe probe = new Probe(builder);
+    if (!builder.visitCacheKeyInputs(probe)) {
+      return builder.build();
+    }
+
+    final Node cached = map.get(probe);
+    if (cached != null) {
+      if (!cached.referenced) {
+        cached.referenced = true;
+      }
+      hitCount.increment();
+      return cached.uri;
+    }
+
+    // built outside of any lock; racing threads share the URI which is put first
+    missCount.increment();
+    final Recorder recorder = new Recorder();
+    builder.visitCacheKeyInputs(recorder);
+    final Key key = new Key(recorder.inputs.toArray(), probe.hash);
+    final Node node = new Node(builder.build());
+    final Node existing = map.putIfAbsent(key, node);
+    if (existing != null) {
+      return existing.uri;
+    }
+
+    clock.offer(key);
+    if (map.size() > maximumSize) {
+      evict();
+    }
+    return node.uri;
+  }
+
+  /** Remove entries in the CLOCK order until the size fits; referenced ones get a second chance. */
+  private void evict() {
+    synchronized (clock) {
+      while (map.size() > maximumSize) {
+        final Key key = clock.poll();
+        if (key == null) {
+          return;
+        }
+        final Node node = map.get(key);
+        if (node == null) { // removed by clear()
+          continue;
+        }
+        if (node.referenced) {
+          node.referenced = false;
+          clock.offer(key);
+        } else if (map.remove(key, node)) {
+          evictionCount.increment();
+        }
+      }
+    }
+  }
+
+  /** Returns the maximum number of URIs. */
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /** Returns the number of cached URIs. */
+  public int size() {
+    return map.size();
+  }
+
+  /** Returns the number of builds which returned a cached URI. */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /** Returns the number of builds which built a URI for a cacheable builder. */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /** Returns the number of evicted URIs. */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  /** Returns the ratio of hits to lookups, or 1.0 if there is no lookup. */
+  public double getHitRatio() {
+    final long hits = getHitCount();
+    final long lookups = hits + getMissCount();
+    return lookups == 0 ? 1.0 : (double) hits / lookups;
+  }
+
+  /** Remove all cached URIs; statistics are kept. */
+  public void clear() {
+    synchronized (clock) {
+      map.clear();
+      clock.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "URIBuildCache(size="
+        + size()
+        + ", maximumSize="
+        + maximumSize
+        + ", hitRatio="
+        + getHitRatio()
+        + ")";
+  }
+
+  /** Visitor of the inputs of a builder; see {@link URIBuilderTiny#visitCacheKeyInputs}. */
+  interface InputVisitor {
+    /** Returns false to stop visiting. */
+    boolean visit(Object input);
+
+    /** Returns false to stop visiting. */
+    boolean visit(int input);
+  }
+
+  /** Stored key; a copy of the inputs and their hash. */
+  private static final class Key {
+    private final Object[] inputs;
+    private final int hash;
+
+    private Key(Object[] inputs, int hash) {
+      this.inputs = inputs;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key that = (Key) o;
+      return hash == that.hash && Arrays.equals(inputs, that.inputs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Key which is looked up; it hashes the inputs of the builder, and {@link ConcurrentHashMap}
+   * compares it with a stored {@link Key} by visiting the inputs again.
+   */
+  private static final class Probe implements InputVisitor {
+    private final URIBuilderTiny builder;
+    private int hash = 1;
+    private Object[] stored; // non-null while comparing
+    private int index;
+
+    private Probe(URIBuilderTiny builder) {
+      this.builder = builder;
+    }
+
+    @Override
+    public boolean visit(Object input) {
+      if (stored == null) {
+        hash = 31 * hash + Objects.hashCode(input);
+        return true;
+      }
+      return index < stored.length && Objects.equals(input, stored[index++]);
+    }
+
+    @Override
+    public boolean visit(int input) {
+      if (stored == null) {
+        hash = 31 * hash + input;
+        return true;
+      }
+      if (index >= stored.length) {
+        return false;
+      }
+      final Object storedInput = stored[index++];
+      return storedInput instanceof Integer && (Integer) storedInput == input;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key key = (Key) o;
+      if (key.hash != hash) {
+        return false;
+      }
+      stored = key.inputs;
+      index = 0;
+      final boolean matches = builder.visitCacheKeyInputs(this) && index == stored.length;
+      stored = null;
+      return matches;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** Visitor which copies the inputs into a stored key. */
+  private static final class Recorder implements InputVisitor {
+    private final List<Object> inputs = new ArrayList<>();
+
+    @Override
+    public boolean visit(Object input) {
+      inputs.add(input);
+      return true;
+    }
+
+    @Override
+    public boolean visit(int input) {
+      inputs.add(input);
+      return true;
+    }
+  }
+
+  /** Cached URI and its reference bit of CLOCK. */
+  private static final class Node {
+    private final URI uri;
+    private volatile boolean referenced;
+
+    private Node(URI uri) {
+      this.uri = uri;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package net.moznion.uribuildertiny;
+
+import java.net.URI;
+import lombok.Getter;
+
+/**
+ * Result of {@link URIBuilderTiny#tryBuild()}.
+ *
+ * <p>It holds either a built URI or the reason why URI cannot be built.
+ */
+public final class URIBuildResult {
+  /** Built URI, or null if failed. */
+  @Getter private final URI uri;
+
+  /** Component which has an invalid character, or null if succeeded. */
+  @Getter private final URIComponent errorComponent;
+
+  /**
+   * Offset of the invalid character in the serialised component, or -1 if succeeded.
+   *
+   * <p>The offset is counted in the component as it appears in the built URI string: path is
+   * serialised as "/" and each non-empty segment (consecutive slashes are squashed), and query is
+   * serialised as "key=value" pairs joined by "&amp;" in the order of building.
+   */
+  @Getter private final int errorOffset;
+
+  /** Reason of the failure, or null if succeeded. */
+  @Getter private final String errorReason;
+
+  private URIBuildResult(
+      URI uri, URIComponent errorComponent, int errorOffset, String errorReason) {
+    this.uri = uri;
+    this.errorComponent = errorComponent;
+    this.errorOffset = errorOffset;
+    this.errorReason = errorReason;
+  }
+
+  static URIBuildResult success(URI uri) {
+    return new URIBuildResult(uri, null, -1, null);
+  }
+
+  static URIBuildResult failure(URIComponent component, int offset, String reason) {
+    return new URIBuildResult(null, component, offset, reason);
+  }
+
+  /** Returns true if URI is built. */
+  public boolean isSuccess() {
+    return uri != null;
+  }
+
+  @Override
+  public String toString() {
+    if (isSuccess()) {
+      return "URIBuildResult(" + uri + ")";
+    }
+    return "URIBuildResult(" + errorComponent + " at " + errorOffset + ": " + errorReason + ")";
+  }
+}
@@ -1,37 +1,79 @@
 package net.moznion.uribuildertiny;
 
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.regex.Pattern;
 import lombok.Getter;
 import lombok.NonNull;
 
 /**
  * Minimal URI builder.
  *
+ * <p>A value of path or query parameter which is a {@link CharSequence} (except {@link String}) or
+ * an {@link EntityWriter} is not stringified on setting; it is encoded directly into the URI on
+ * building.
+ *
  * @author moznion
  */
 public class URIBuilderTiny {
   @Getter private String scheme;
   @Getter private String host;
   @Getter private int port;
-  @Getter private List<String> paths;
-  @Getter private Map<String, String> queryParameters;
-  @Getter private String fragment;
+  // encoded String or DeferredEntity
+  private List<Object> paths;
+  private Map<String, Object> queryParameters;
+  private Object fragment;
+  // values of the declared parameters indexed by slot; null if this isn't bound to a schema
+  private QueryParameterSchema schema;
+  private Object[] schemaValues;
   @Getter private boolean forceRemoveTrailingSlash;
+  @Getter private boolean deferEncoding;
+  @Getter private final Charset charset;
+
+  // serialised components which are reused by the next building; null when they are changed
+  private String cachedBaseURIString;
+  private String cachedQueryString;
+  // index where paths start in the base URI string which is built last
+  private int baseURIPathStart;
 
-  private final URLEncoder urlEncoder;
-  private final URLEncoder nopURLEncoder;
+  private URLEncoder urlEncoder;
+  private final URLEncoder hostURLEncoder;
+  private URLEncoder nopURLEncoder;
 
-  /** Create a new empty instance. */
+  /** Create a new empty instance which encodes entities as UTF-8. */
   public URIBuilderTiny() {
-    this(URI.create(""));
+    this(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create a new empty instance.
+   *
+   * @param charset charset to percent-encode paths, query parameters and fragment
+   */
+  public URIBuilderTiny(@NonNull Charset charset) {
+    this.charset = charset;
+    scheme = "";
+    host = "";
+    port = -1;
+    paths = new ArrayList<>();
+    queryParameters = new TreeMap<>();
+    fragment = "";
+
+    urlEncoder = new URLEncoder(new ConcreteEntityURLEncoder(charset));
+    hostURLEncoder = new URLEncoder(new HostEntityURLEncoder());
+    nopURLEncoder = new URLEncoder(new NopEntityURLEncoder());
+
+    forceRemoveTrailingSlash = false;
+    deferEncoding = false;
   }
 
   /**
@@ -43,36 +85,60 @@ public class URIBuilderTiny {
     this(URI.create(uriString));
   }
 
+  /**
+   * Create a new instance according to passed URI string.
+   *
+   * <p>This method doesn't apply percent-encoding to URI string which is passed via argument.
+   *
+   * @param uriString initial URI
+   * @param charset charset to percent-encode paths, query parameters and fragment
+   */
+  public URIBuilderTiny(@NonNull String uriString, @NonNull Charset charset) {
+    this(URI.create(uriString), charset);
+  }
+
   /**
    * Create a new instance according to passed URI instance.
    *
    * <p>This method doesn't apply percent-encoding to URI which is passed via argument.
    */
   public URIBuilderTiny(@NonNull URI uri) {
-    scheme = uri.getScheme();
-    if (scheme == null) {
-      scheme = "";
+    this(uri, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create a new instance according to passed URI instance.
+   *
+   * <p>This method doesn't apply percent-encoding to URI which is passed via argument.
+   *
+   * @param uri initial URI
+   * @param charset charset to percent-encode paths, query parameters and fragment
+   */
+  public URIBuilderTiny(@NonNull URI uri, @NonNull Charset charset) {
+    this(charset);
+
+    final String scheme = uri.getScheme();
+    if (scheme != null) {
+      this.scheme = scheme;
     }
 
-    host = uri.getHost();
-    if (host == null) {
-      host = "";
+    final String host = uri.getHost();
+    if (host != null) {
+      this.host = host;
     }
 
     port = uri.getPort();
 
-    fragment = uri.getFragment();
-    if (fragment == null) {
-      fragment = "";
+    final String fragment = uri.getFragment();
+    if (fragment != null) {
+      this.fragment = fragment;
     }
 
-    paths = new ArrayList<>();
     String pathString = uri.getPath();
     if (pathString != null && !pathString.isEmpty()) {
       paths.addAll(Arrays.asList(pathString.split("/")));
     }
 
-    queryParameters = new TreeMap<>();
     String queryString = uri.getQuery();
     if (queryString != null && !queryString.isEmpty()) {
       for (String term : queryString.split("&")) {
@@ -82,26 +148,55 @@ public class URIBuilderTiny {
         }
       }
     }
+  }
 
-    urlEncoder = new URLEncoder(new ConcreteEntityURLEncoder(StandardCharsets.UTF_8));
-    nopURLEncoder = new URLEncoder(new NopEntityURLEncoder());
+  /** Get paths; each of them is percent-encoded unless it is set as raw string. */
+  public List<String> getPaths() {
+    final List<String> stringifiedPaths = new ArrayList<>(paths.size());
+    for (Object path : paths) {
+      stringifiedPaths.add(path.toString());
+    }
+    return stringifiedPaths;
+  }
 
-    forceRemoveTrailingSlash = false;
+  /** Get query parameters; each of them is percent-encoded unless it is set as raw string. */
+  public Map<String, String> getQueryParameters() {
+    final Map<String, String> stringifiedQueryParameters = new TreeMap<>();
+    if (schema != null) {
+      for (int slot = 0; slot < schemaValues.length; slot++) {
+        if (schemaValues[slot] != null) {
+          stringifiedQueryParameters.put(
+              schema.encodedNameOf(slot), schemaValues[slot].toString());
+        }
+      }
+    }
+    for (Entry<String, Object> queryParameter : queryParameters.entrySet()) {
+      stringifiedQueryParameters.put(queryParameter.getKey(), queryParameter.getValue().toString());
+    }
+    return stringifiedQueryParameters;
+  }
+
+  /** Get a fragment; it is percent-encoded unless it is set as raw string. */
+  public String getFragment() {
+    return fragment.toString();
   }
 
   /** Set a scheme. */
   public URIBuilderTiny setScheme(@NonNull String scheme) {
     this.scheme = scheme;
+    cachedBaseURIString = null;
     return this;
   }
 
   /**
    * Set a host.
    *
-   * <p>This method applies percent-encoding to host automatically.
+   * <p>This method converts internationalised domain name to ASCII (punycode), normalises it to
+   * lowercase, wraps a bare IPv6 address with brackets and applies percent-encoding to characters
+   * which are not allowed in host automatically.
    */
   public URIBuilderTiny setHost(@NonNull String host) {
-    return setHost(urlEncoder, host);
+    return setHost(hostURLEncoder, host);
   }
 
   /** Set a host as raw string. */
@@ -121,6 +216,7 @@ public class URIBuilderTiny {
     if (isTrailingSlash) {
       this.host += "/";
     }
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -131,6 +227,7 @@ public class URIBuilderTiny {
    */
   public URIBuilderTiny setPort(int port) {
     this.port = port;
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -151,7 +248,8 @@ public class URIBuilderTiny {
 
   private URIBuilderTiny setPaths(URLEncoder urlEncoder, @NonNull List<?> paths) {
     this.paths.clear();
-    this.paths.addAll(urlEncoder.encode(paths));
+    urlEncoder.encodeInto(paths, this.paths);
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -172,7 +270,8 @@ public class URIBuilderTiny {
 
   private URIBuilderTiny setPaths(URLEncoder urlEncoder, @NonNull Object... paths) {
     this.paths.clear();
-    this.paths.addAll(urlEncoder.encode(Arrays.asList(paths)));
+    urlEncoder.encodeInto(Arrays.asList(paths), this.paths);
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -193,7 +292,8 @@ public class URIBuilderTiny {
 
   private URIBuilderTiny setPathsByString(URLEncoder urlEncoder, @NonNull String paths) {
     this.paths.clear();
-    this.paths.addAll(urlEncoder.encode(Arrays.asList(paths.split("/"))));
+    urlEncoder.encodeInto(Arrays.asList(paths.split("/")), this.paths);
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -212,7 +312,8 @@ public class URIBuilderTiny {
   }
 
   private URIBuilderTiny appendPaths(URLEncoder urlEncoder, @NonNull List<?> paths) {
-    this.paths.addAll(urlEncoder.encode(paths));
+    urlEncoder.encodeInto(paths, this.paths);
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -231,7 +332,8 @@ public class URIBuilderTiny {
   }
 
   private URIBuilderTiny appendPaths(URLEncoder urlEncoder, @NonNull Object... paths) {
-    this.paths.addAll(urlEncoder.encode(Arrays.asList(paths)));
+    urlEncoder.encodeInto(Arrays.asList(paths), this.paths);
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -251,7 +353,8 @@ public class URIBuilderTiny {
   }
 
   private URIBuilderTiny appendPathsByString(URLEncoder urlEncoder, @NonNull String paths) {
-    this.paths.addAll(urlEncoder.encode(Arrays.asList(paths.split("/"))));
+    urlEncoder.encodeInto(Arrays.asList(paths.split("/")), this.paths);
+    cachedBaseURIString = null;
     return this;
   }
 
@@ -273,7 +376,8 @@ public class URIBuilderTiny {
   private <T> URIBuilderTiny setQueryParameters(
       URLEncoder urlEncoder, @NonNull Map<String, T> queryParameters) {
     this.queryParameters.clear();
-    this.queryParameters.putAll(urlEncoder.encode(queryParameters));
+    urlEncoder.encodeInto(queryParameters, this.queryParameters);
+    queryParametersAdded();
     return this;
   }
 
@@ -295,7 +399,8 @@ public class URIBuilderTiny {
   private URIBuilderTiny setQueryParameter(
       URLEncoder urlEncoder, @NonNull String key, @NonNull Object value) {
     queryParameters.clear();
-    queryParameters.put(urlEncoder.encode(key), urlEncoder.encode(value));
+    putQueryParameter(urlEncoder.encode(key), urlEncoder.encodeOrDefer(value));
+    cachedQueryString = null;
     return this;
   }
 
@@ -315,7 +420,30 @@ public class URIBuilderTiny {
 
   private URIBuilderTiny addQueryParameters(
       URLEncoder urlEncoder, @NonNull Map<String, ?> queryParameters) {
-    this.queryParameters.putAll(urlEncoder.encode(queryParameters));
+    urlEncoder.encodeInto(queryParameters, this.queryParameters);
+    queryParametersAdded();
+    return this;
+  }
+
+  /**
+   * Add properties of the bean as query parameters.
+   *
+   * <p>Properties are components of a record, public getters or public fields (in this order of
+   * precedence), and the property name is used as the key. A property whose value is null is
+   * skipped. Accessors are resolved once per class and cached, so there is no reflection after the
+   * first call for each class. If a {@link Map} is given, it is same as {@link
+   * #addQueryParameters(Map)}.
+   *
+   * <p>This method applies percent-encoding to query parameters automatically.
+   */
+  @SuppressWarnings("unchecked")
+  public URIBuilderTiny addQueryParameters(@NonNull Object bean) {
+    if (bean instanceof Map) {
+      return addQueryParameters(urlEncoder, (Map<String, ?>) bean);
+    }
+
+    QueryParameterBinder.of(bean.getClass()).bind(bean, queryParameters, urlEncoder);
+    queryParametersAdded();
     return this;
   }
 
@@ -335,10 +463,121 @@ public class URIBuilderTiny {
 
   private URIBuilderTiny addQueryParameter(
       URLEncoder urlEncoder, @NonNull String key, @NonNull Object value) {
-    queryParameters.put(urlEncoder.encode(key), urlEncoder.encode(value));
+    putQueryParameter(urlEncoder.encode(key), urlEncoder.encodeOrDefer(value));
+    cachedQueryString = null;
+    return this;
+  }
+
+  /** Returns the schema which this is bound to, or null. */
+  public QueryParameterSchema getQueryParameterSchema() {
+    return schema;
+  }
+
+  URIBuilderTiny bindSchema(QueryParameterSchema schema) {
+    this.schema = schema;
+    schemaValues = new Object[schema.size()];
+    queryParametersAdded();
+    return this;
+  }
+
+  /** Put a query parameter, or store it into its slot if the key is declared by the schema. */
+  private void putQueryParameter(String encodedKey, Object value) {
+    if (schema != null) {
+      final int slot = schema.slotOfEncodedName(encodedKey);
+      if (slot >= 0) {
+        schemaValues[slot] = value;
+        return;
+      }
+    }
+    queryParameters.put(encodedKey, value);
+  }
+
+  /**
+   * Invalidate the cached query string after adding parameters in bulk, and move parameters whose
+   * keys are declared by the schema into their slots so that each key appears only once.
+   */
+  private void queryParametersAdded() {
+    cachedQueryString = null;
+    if (schema == null || queryParameters.isEmpty()) {
+      return;
+    }
+    for (int slot = 0; slot < schemaValues.length; slot++) {
+      final Object value = queryParameters.remove(schema.encodedNameOf(slot));
+      if (value != null) {
+        schemaValues[slot] = value;
+      }
+    }
+  }
+
+  /**
+   * Set a value of the declared query parameter by slot index of {@link QueryParameterSchema}.
+   *
+   * <p>This method applies percent-encoding to a value automatically. Declared parameters precede
+   * the other query parameters in the declared order, and they are not cleared by {@link
+   * #setQueryParameters(Map)} and so on.
+   *
+   * @throws IllegalStateException if this is not created by {@link
+   *     QueryParameterSchema#newBuilder()}
+   * @throws IndexOutOfBoundsException if the slot is not declared
+   */
+  public URIBuilderTiny setDeclaredQueryParameter(int slot, @NonNull Object value) {
+    return setSchemaValue(urlEncoder, slot, value);
+  }
+
+  /** Set a value of the declared query parameter by slot index as raw string. */
+  public URIBuilderTiny setRawDeclaredQueryParameter(int slot, @NonNull Object value) {
+    return setSchemaValue(nopURLEncoder, slot, value);
+  }
+
+  /**
+   * Set a value of the declared query parameter by typed handle.
+   *
+   * <p>This method applies percent-encoding to a value automatically.
+   *
+   * @throws IllegalArgumentException if the handle is of another schema
+   */
+  public <T> URIBuilderTiny setDeclaredQueryParameter(
+      @NonNull QueryParameterSchema.Parameter<T> parameter, @NonNull T value) {
+    return setSchemaValue(urlEncoder, slotOf(parameter), value);
+  }
+
+  /** Set a value of the declared query parameter by typed handle as raw string. */
+  public <T> URIBuilderTiny setRawDeclaredQueryParameter(
+      @NonNull QueryParameterSchema.Parameter<T> parameter, @NonNull T value) {
+    return setSchemaValue(nopURLEncoder, slotOf(parameter), value);
+  }
+
+  /** Remove a value of the declared query parameter; the parameter is omitted on building. */
+  public URIBuilderTiny removeDeclaredQueryParameter(int slot) {
+    checkSlot(slot);
+    schemaValues[slot] = null;
+    cachedQueryString = null;
     return this;
   }
 
+  private URIBuilderTiny setSchemaValue(URLEncoder urlEncoder, int slot, Object value) {
+    checkSlot(slot);
+    schemaValues[slot] = urlEncoder.encodeOrDefer(value);
+    cachedQueryString = null;
+    return this;
+  }
+
+  private int slotOf(QueryParameterSchema.Parameter<?> parameter) {
+    if (parameter.getSchema() != schema) {
+      throw new IllegalArgumentException("Parameter of another schema: " + parameter.getName());
+    }
+    return parameter.getSlot();
+  }
+
+  private void checkSlot(int slot) {
+    if (schema == null) {
+      throw new IllegalStateException("Builder is not bound to a query parameter schema");
+    }
+    if (slot < 0 || slot >= schemaValues.length) {
+      throw new IndexOutOfBoundsException("Slot: " + slot + ", size: " + schemaValues.length);
+    }
+  }
+
   /**
    * Set a fragment.
    *
@@ -354,7 +593,24 @@ public class URIBuilderTiny {
   }
 
   private URIBuilderTiny setFragment(URLEncoder urlEncoder, @NonNull String fragment) {
-    this.fragment = urlEncoder.encode(fragment);
+    this.fragment = urlEncoder.encodeOrDefer(fragment);
+    return this;
+  }
+
+  /**
+   * Set a fragment which is written by the writer on building.
+   *
+   * <p>This method applies percent-encoding to a fragment automatically. A {@link CharSequence} can
+   * be set by {@code sink -> sink.append(charSequence)}.
+   */
+  public URIBuilderTiny setFragmentFrom(@NonNull EntityWriter fragment) {
+    this.fragment = urlEncoder.encodeOrDefer(fragment);
+    return this;
+  }
+
+  /** Set a fragment which is written by the writer on building as raw string. */
+  public URIBuilderTiny setRawFragmentFrom(@NonNull EntityWriter fragment) {
+    this.fragment = nopURLEncoder.encodeOrDefer(fragment);
     return this;
   }
 
@@ -366,76 +622,651 @@ public class URIBuilderTiny {
    */
   public URIBuilderTiny forceRemoveTrailingSlash(boolean shouldRemove) {
     forceRemoveTrailingSlash = shouldRemove;
+    cachedBaseURIString = null;
     return this;
   }
 
-  private static final Pattern CONSECUTIVE_SLASHES_RE = Pattern.compile("/+");
+  /**
+   * Set flag to decide to defer percent-encoding until building.
+   *
+   * <p>In the deferred mode, values of paths, query parameters and fragment which are set after
+   * this are recorded as is with the encoding of their component; they are encoded only once,
+   * directly into the buffer of URI on building. So values which are overwritten before building
+   * are never encoded. Keys of query parameters and host are still encoded on setting because they
+   * decide the order and the normalised form.
+   *
+   * <p>Values are read at the same time as the default mode: an immutable value is kept as is, any
+   * other object is stringified on setting, and a mutable {@link CharSequence} or an {@link
+   * EntityWriter} is read on every building in both modes. So built URIs are same as the ones of
+   * the default mode.
+   */
+  public URIBuilderTiny deferEncoding(boolean shouldDefer) {
+    deferEncoding = shouldDefer;
+    urlEncoder = urlEncoder.withDeferredEncoding(shouldDefer);
+    nopURLEncoder = nopURLEncoder.withDeferredEncoding(shouldDefer);
+    return this;
+  }
 
   /** Build a new URI instance by according to builder's information. */
   public URI build() {
+    return URI.create(buildURIString());
+  }
+
+  /**
+   * Build a new URI instance by according to builder's information without throwing exception.
+   *
+   * <p>The URI string is built once and each component of it is validated in a single pass, so an
+   * invalid raw string is reported as a failure result with the component and the offset instead
+   * of {@link IllegalArgumentException}; it avoids the cost of filling in stack traces for invalid
+   * inputs.
+   *
+   * <p>It is stricter than {@link #build()} for a port without scheme: e.g. {@code
+   * setHost("example.com").setPort(80)} fails here, while {@link #build()} returns {@code
+   * example.com:80}, which {@link URI} reads as scheme "example.com" and no host.
+   *
+   * @return result which holds either a built URI or the reason of failure
+   */
+  public URIBuildResult tryBuild() {
+    final StringBuilder uriStringBuilder = new StringBuilder();
+    final URIBuildResult failure = buildValidatedURIString(uriStringBuilder);
+    if (failure != null) {
+      return failure;
+    }
+
+    try {
+      return URIBuildResult.success(URI.create(uriStringBuilder.toString()));
+    } catch (IllegalArgumentException e) {
+      // should not happen because components are already validated
+      return URIBuildResult.failure(null, -1, e.getMessage());
+    }
+  }
+
+  /**
+   * Build a new {@link CompactURI} instance by according to builder's information.
+   *
+   * <p>It is a lightweight alternative of {@link #build()}; characters are validated in a single
+   * pass instead of being parsed by {@link URI}.
+   *
+   * @throws IllegalArgumentException if any component has an invalid character
+   */
+  public CompactURI buildCompact() {
+    final StringBuilder uriStringBuilder = new StringBuilder();
+    final URIBuildResult failure = buildValidatedURIString(uriStringBuilder);
+    if (failure != null) {
+      throw new IllegalArgumentException(
+          failure.getErrorReason()
+              + " in "
+              + failure.getErrorComponent()
+              + " at index "
+              + failure.getErrorOffset());
+    }
+    return CompactURI.parse(uriStringBuilder.toString());
+  }
+
+  /**
+   * Build the URI string into the builder and validate its components; values are encoded only
+   * once for both.
+   *
+   * @return failure result, or null if all components are valid
+   */
+  private URIBuildResult buildValidatedURIString(StringBuilder uriStringBuilder) {
+    uriStringBuilder.append(getBaseURIString());
+    final int pathStart = baseURIPathStart;
+
+    int queryStart = -1;
+    if (hasQueryParameters()) {
+      uriStringBuilder.append("?");
+      queryStart = uriStringBuilder.length();
+      appendCachedQueryString(uriStringBuilder);
+    }
+
+    final int fragmentMark = uriStringBuilder.length();
+    appendFragment(uriStringBuilder);
+    final int fragmentStart =
+        uriStringBuilder.length() == fragmentMark ? -1 : fragmentMark + 1; // after "#"
+
+    return URIValidator.validate(
+        scheme, host, port, uriStringBuilder, pathStart, queryStart, fragmentStart);
+  }
+
+  private String buildURIString() {
+    final String baseURIString = getBaseURIString();
+    final int queryLength = cachedQueryString == null ? 16 : cachedQueryString.length() + 1;
+    final StringBuilder uriStringBuilder =
+        new StringBuilder(baseURIString.length() + queryLength + 16).append(baseURIString);
+
+    if (hasQueryParameters()) {
+      uriStringBuilder.append("?");
+      appendCachedQueryString(uriStringBuilder);
+    }
+
+    appendFragment(uriStringBuilder);
+
+    return uriStringBuilder.toString();
+  }
+
+  /**
+   * Build a body of application/x-www-form-urlencoded by according to builder's query parameters.
+   *
+   * <p>The body is same as the query string of {@link #build()}; it shares the serialisation and
+   * its cache with building URI.
+   *
+   * @return form body
+   */
+  public FormBody buildFormBody() {
+    if (cachedQueryString == null) {
+      final StringBuilder sb = new StringBuilder();
+      appendCachedQueryString(sb);
+      if (cachedQueryString == null) { // not reusable
+        return new FormBody(sb.toString());
+      }
+    }
+    return new FormBody(cachedQueryString);
+  }
+
+  /** Append the query string (without leading "?"), and cache it unless it's not reusable. */
+  private void appendCachedQueryString(StringBuilder sb) {
+    if (cachedQueryString != null) {
+      sb.append(cachedQueryString);
+      return;
+    }
+
+    final int queryStart = sb.length();
+    appendQueryString(sb, null, null, null);
+    if (!containsVolatileEntity(queryParameters.values())
+        && (schemaValues == null || !containsVolatileEntity(Arrays.asList(schemaValues)))) {
+      cachedQueryString = sb.substring(queryStart);
+    }
+  }
+
+  /**
+   * Build a new signed URI instance by according to builder's information.
+   *
+   * <p>The expiry parameter is merged into the sorted query parameters, then the signature is
+   * calculated over the URI without fragment (the canonical form) and appended as the last query
+   * parameter. Stored parameters which have the same name as the expiry or the signature are
+   * excluded from both the canonical form and the URI, so the URI has only one of each.
+   *
+   * @param signer signer to calculate the signature
+   * @param expires expiry of the signed URI; e.g. epoch seconds
+   * @return signed URI
+   */
+  public URI buildSigned(@NonNull URISigner signer, long expires) {
+    final StringBuilder uriStringBuilder = new StringBuilder(getBaseURIString());
+
+    uriStringBuilder.append("?");
+    appendQueryString(
+        uriStringBuilder,
+        signer.getExpiresParameterName(),
+        String.valueOf(expires),
+        signer.getSignatureParameterName());
+
+    final String signature = signer.sign(uriStringBuilder.toString());
+    uriStringBuilder
+        .append("&")
+        .append(signer.getSignatureParameterName())
+        .append("=")
+        .append(signature);
+
+    appendFragment(uriStringBuilder);
+
+    return URI.create(uriStringBuilder.toString());
+  }
+
+  /**
+   * Build the fewest URIs which share builder's information and carry the values as a repeated
+   * query parameter, so that each URI fits the maximum length.
+   *
+   * <p>Values are percent-encoded once and packed greedily in order while the length of each URI is
+   * calculated incrementally; no URI is built and discarded. The repeated parameter is put at the
+   * sorted position of query parameters as {@code key=v1&key=v2...}, and it overrides the stored
+   * parameter which has the same key.
+   *
+   * @param key name of the repeated parameter
+   * @param values values of the repeated parameter; each value is stringified and percent-encoded
+   * @param maxLength maximum length of each URI string (the number of characters of the
+   *     percent-encoded URI)
+   * @return URIs which carry all values in order; empty if {@code values} is empty
+   * @throws IllegalArgumentException if a URI with a single value exceeds {@code maxLength}
+   */
+  public List<URI> buildSplit(@NonNull String key, @NonNull Collection<?> values, int maxLength) {
+    final String encodedKey = urlEncoder.encode(key);
+
+    // the URI is prefix + "key=v1&key=v2..." + suffix
+    final StringBuilder prefix = new StringBuilder(getBaseURIString()).append("?");
+    final StringBuilder suffix = new StringBuilder();
+    final boolean hasPrecedingPairs = appendQueryStringAround(encodedKey, prefix, suffix);
+    appendFragment(suffix);
+
+    final List<URI> uris = new ArrayList<>();
+    StringBuilder uriStringBuilder = null;
+    for (Object value : values) {
+      final String encodedValue = urlEncoder.encode(value);
+      final int pairLength = encodedKey.length() + 1 + encodedValue.length();
+
+      if (uriStringBuilder != null
+          && uriStringBuilder.length() + 1 + pairLength + suffix.length() > maxLength) {
+        uris.add(URI.create(uriStringBuilder.append(suffix).toString()));
+        uriStringBuilder = null;
+      }
+
+      final boolean isFirst = uriStringBuilder == null && !hasPrecedingPairs;
+      if (uriStringBuilder == null) {
+        final int length = prefix.length() + (isFirst ? 0 : 1) + pairLength + suffix.length();
+        if (length > maxLength) {
+          throw new IllegalArgumentException(
+              "URI exceeds the maximum length " + maxLength + " with a single value: " + length);
+        }
+        uriStringBuilder = new StringBuilder(prefix);
+      }
+
+      if (!isFirst) {
+        uriStringBuilder.append("&");
+      }
+      uriStringBuilder.append(encodedKey).append("=").append(encodedValue);
+    }
+
+    if (uriStringBuilder != null) {
+      uris.add(URI.create(uriStringBuilder.append(suffix).toString()));
+    }
+    return uris;
+  }
+
+  /**
+   * Build a sequence of URIs which differ only in the value of a query parameter; e.g. pages of a
+   * paginated API.
+   *
+   * <p>Everything except the parameter is serialised once into a prefix and a suffix, so each URI
+   * of the sequence is rendered by copying them around the value. The parameter is put at the
+   * sorted position of query parameters, and it overrides the stored parameter which has the same
+   * key. The sequence is a snapshot; changes of this builder after this call are not reflected.
+   *
+   * @param key name of the varying parameter
+   * @return sequence of URIs
+   */
+  public URISequence buildSequence(@NonNull String key) {
+    final StringBuilder prefix = new StringBuilder(getBaseURIString()).append("?");
+    final StringBuilder suffix = new StringBuilder();
+    final String encodedKey = urlEncoder.encode(key);
+    if (appendQueryStringAround(encodedKey, prefix, suffix)) {
+      prefix.append("&");
+    }
+    prefix.append(encodedKey).append("=");
+    appendFragment(suffix);
+    return new URISequence(prefix.toString(), suffix.toString(), urlEncoder);
+  }
+
+  /**
+   * Append a query parameter to a URI string without parsing it.
+   *
+   * @see #appendQueryParameters(String, Map, Charset)
+   */
+  public static String appendQueryParameter(
+      @NonNull String uriString, @NonNull String key, @NonNull Object value) {
+    return appendQueryParameters(
+        uriString, Collections.singletonMap(key, value), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Append query parameters to a URI string without parsing it; they are percent-encoded as UTF-8.
+   *
+   * @see #appendQueryParameters(String, Map, Charset)
+   */
+  public static String appendQueryParameters(
+      @NonNull String uriString, @NonNull Map<String, ?> queryParameters) {
+    return appendQueryParameters(uriString, queryParameters, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Append query parameters to a URI string without parsing it; e.g. add tracking parameters to a
+   * redirect URL.
+   *
+   * <p>The end of the query (the beginning of the fragment) is found in a single scan, and the
+   * percent-encoded parameters are spliced there in the iteration order of the map; the rest of the
+   * string is copied as is. Existing parameters are neither sorted nor replaced.
+   *
+   * <p>Each value is stringified as a whole, as {@link #addQueryParameter(String, Object)} does; a
+   * {@link Collection} value becomes one parameter of its string form (e.g. {@code
+   * k=%5Ba%2C+b%5D}), not repeated keys.
+   *
+   * @param uriString URI string; it is not validated
+   * @param queryParameters parameters to append; keys and values are percent-encoded
+   * @param charset charset to percent-encode keys and values
+   * @return new URI string, or {@code uriString} itself if there is no parameter to append
+   * @throws NullPointerException if a key or a value of {@code queryParameters} is null; nothing
+   *     is appended
+   */
+  public static String appendQueryParameters(
+      @NonNull String uriString,
+      @NonNull Map<String, ?> queryParameters,
+      @NonNull Charset charset) {
+    if (queryParameters.isEmpty()) {
+      return uriString;
+    }
+    for (Entry<String, ?> queryParameter : queryParameters.entrySet()) {
+      if (queryParameter.getKey() == null) {
+        throw new NullPointerException("Key of query parameter is null");
+      }
+      if (queryParameter.getValue() == null) {
+        throw new NullPointerException(
+            "Value of query parameter \"" + queryParameter.getKey() + "\" is null");
+      }
+    }
+
+    final int length = uriString.length();
+    int queryStart = -1;
+    int insertAt = length;
+    for (int i = 0; i < length; i++) {
+      final char c = uriString.charAt(i);
+      if (c == '#') {
+        insertAt = i;
+        break;
+      }
+      if (c == '?' && queryStart < 0) {
+        queryStart = i;
+      }
+    }
+
+    final StringBuilder sb =
+        new StringBuilder(length + queryParameters.size() * 32).append(uriString, 0, insertAt);
+    boolean isFirst = true;
+    if (queryStart < 0) {
+      sb.append('?');
+    } else if (insertAt > queryStart + 1 && uriString.charAt(insertAt - 1) != '&') {
+      isFirst = false;
+    }
+
+    final EntityURLEncoder encoder = new ConcreteEntityURLEncoder(charset);
+    for (Entry<String, ?> queryParameter : queryParameters.entrySet()) {
+      if (!isFirst) {
+        sb.append('&');
+      }
+      new DeferredEntity(queryParameter.getKey(), encoder).appendTo(sb);
+      sb.append('=');
+      new DeferredEntity(queryParameter.getValue(), encoder).appendTo(sb);
+      isFirst = false;
+    }
+
+    return sb.append(uriString, insertAt, length).toString();
+  }
+
+  /**
+   * Visit the inputs of components which identify the URI to build, in a fixed order; they are
+   * the key of {@link URIBuildCache}.
+   *
+   * @return false if the visitor rejects an input, or if any component can't be a part of the key
+   *     (see {@link DeferredEntity#isCacheable()})
+   */
+  boolean visitCacheKeyInputs(URIBuildCache.InputVisitor visitor) {
+    if (!visitor.visit(scheme)
+        || !visitor.visit(host)
+        || !visitor.visit(port)
+        || !visitor.visit(forceRemoveTrailingSlash ? 1 : 0)
+        || !visitor.visit(charset)
+        || !visitor.visit(paths.size())) {
+      return false;
+    }
+    for (Object path : paths) {
+      if (!visitCacheKeyEntity(visitor, path)) {
+        return false;
+      }
+    }
+    if (schema != null) {
+      if (!visitor.visit(schema)) {
+        return false;
+      }
+      for (Object value : schemaValues) {
+        if (!visitCacheKeyEntity(visitor, value)) {
+          return false;
+        }
+      }
+    }
+    if (!visitor.visit(queryParameters.size())) {
+      return false;
+    }
+    for (Entry<String, Object> queryParameter : queryParameters.entrySet()) {
+      if (!visitor.visit(queryParameter.getKey())
+          || !visitCacheKeyEntity(visitor, queryParameter.getValue())) {
+        return false;
+      }
+    }
+    return visitCacheKeyEntity(visitor, fragment);
+  }
+
+  private static boolean visitCacheKeyEntity(URIBuildCache.InputVisitor visitor, Object entity) {
+    if (entity instanceof DeferredEntity && !((DeferredEntity) entity).isCacheable()) {
+      return false;
+    }
+    return visitor.visit(entity);
+  }
+
+  /**
+   * Get scheme, host, port and paths as a string.
+   *
+   * <p>It is reused until any of them is changed; unless paths contain a volatile {@link
+   * DeferredEntity} because its content can be changed after setting.
+   */
+  private String getBaseURIString() {
+    if (cachedBaseURIString != null) {
+      return cachedBaseURIString;
+    }
+
+    final String baseURIString = buildBaseURIString();
+    if (!containsVolatileEntity(paths)) {
+      cachedBaseURIString = baseURIString;
+    }
+    return baseURIString;
+  }
+
+  private static boolean containsVolatileEntity(Collection<Object> entities) {
+    for (Object entity : entities) {
+      if (entity instanceof DeferredEntity && ((DeferredEntity) entity).isVolatile()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String buildBaseURIString() {
     final StringBuilder baseURIStringBuilder = new StringBuilder();
 
     boolean shouldAppendTrailingSlash = false;
     if (!host.isEmpty()) {
-      if (host.charAt(host.length() - 1) == '/') { // is last character slash?
+      int hostLength = host.length();
+      if (host.charAt(hostLength - 1) == '/') { // is last character slash?
         shouldAppendTrailingSlash = !forceRemoveTrailingSlash;
-        host = host.substring(0, host.length() - 1);
+        hostLength--;
       }
-      baseURIStringBuilder.append(host);
+      baseURIStringBuilder.append(host, 0, hostLength);
     }
 
     if (port >= 0) {
       baseURIStringBuilder.append(":").append(port);
     }
 
-    if (!paths.isEmpty()) {
-      for (String path : paths) {
-        if (!path.isEmpty()) {
-          baseURIStringBuilder.append("/").append(path);
-        }
-      }
+    int pathStart = baseURIStringBuilder.length();
+    for (Object path : paths) {
+      appendNonEmpty(baseURIStringBuilder, '/', path);
     }
 
     if (shouldAppendTrailingSlash) {
       baseURIStringBuilder.append("/");
     }
 
-    String uriString = baseURIStringBuilder.toString();
-    uriString = CONSECUTIVE_SLASHES_RE.matcher(uriString).replaceAll("/"); // Squash consecutive
+    String uriString = squashConsecutiveSlashes(baseURIStringBuilder);
+
+    if (!scheme.isEmpty()) {
+      String glue = "://";
+      if (!uriString.isEmpty() && uriString.charAt(0) == '/') {
+        glue = ":/"; // the second slash for scheme exists in uriString, so reduced
+      }
+      uriString = scheme + glue + uriString;
+      pathStart += scheme.length() + glue.length();
+    }
+
+    baseURIPathStart = pathStart;
+    return uriString;
+  }
+
+  private static String squashConsecutiveSlashes(StringBuilder sb) {
+    final int length = sb.length();
+    int i = sb.indexOf("//");
+    if (i < 0) {
+      return sb.toString();
+    }
+
+    int squashedLength = i + 1;
+    for (i += 2; i < length; i++) {
+      final char c = sb.charAt(i);
+      if (c != '/' || sb.charAt(squashedLength - 1) != '/') {
+        sb.setCharAt(squashedLength++, c);
+      }
+    }
+    sb.setLength(squashedLength);
+    return sb.toString();
+  }
+
+  /**
+   * Append query parameters (without leading "?") to the builder.
+   *
+   * <p>If {@code extraKey} is not null, that pair is merged into the sorted position; it
+   * overrides the stored parameter which has the same key, and declared parameters are sorted
+   * together with the others. The stored parameter whose key is {@code excludedKey} is skipped.
+   */
+  private void appendQueryString(
+      StringBuilder sb, String extraKey, String extraValue, String excludedKey) {
+    boolean isFirst = true;
+    Map<String, Object> sortedQueryParameters = queryParameters;
+    if (extraKey == null) {
+      isFirst = !appendSchemaValues(sb, null);
+    } else if (schema != null) {
+      // the canonical form of signing is sorted, so declared parameters are merged into it
+      sortedQueryParameters = new TreeMap<>(allQueryParameters());
+    }
+
+    boolean shouldAppendExtra = extraKey != null;
+    for (Entry<String, Object> queryParameter : sortedQueryParameters.entrySet()) {
+      final String key = queryParameter.getKey();
+      if (key.equals(excludedKey)) {
+        continue;
+      }
+      if (shouldAppendExtra) {
+        final int cmp = key.compareTo(extraKey);
+        if (cmp >= 0) {
+          appendQueryPair(sb, isFirst, extraKey, extraValue);
+          isFirst = false;
+          shouldAppendExtra = false;
+          if (cmp == 0) {
+            continue;
+          }
+        }
+      }
+      appendQueryPair(sb, isFirst, key, queryParameter.getValue());
+      isFirst = false;
+    }
+
+    if (shouldAppendExtra) {
+      appendQueryPair(sb, isFirst, extraKey, extraValue);
+    }
+  }
+
+  /**
+   * Append the declared query parameters which have values in the declared order; the parameter
+   * whose key is {@code excludedKey} is skipped.
+   *
+   * @return true if any parameter is appended
+   */
+  private boolean appendSchemaValues(StringBuilder sb, String excludedKey) {
+    if (schema == null) {
+      return false;
+    }
+
+    boolean isFirst = true;
+    for (int slot = 0; slot < schemaValues.length; slot++) {
+      final Object value = schemaValues[slot];
+      if (value != null && !schema.encodedNameOf(slot).equals(excludedKey)) {
+        if (!isFirst) {
+          sb.append('&');
+        }
+        sb.append(schema.encodedKeyOf(slot));
+        DeferredEntity.append(sb, value);
+        isFirst = false;
+      }
+    }
+    return !isFirst;
+  }
 
-    final StringBuilder queryAndFragmentStringBuilder = new StringBuilder();
+  private boolean hasQueryParameters() {
     if (!queryParameters.isEmpty()) {
-      queryAndFragmentStringBuilder.append("?");
-
-      int i = 1;
-      final int size = queryParameters.size();
-      for (Entry<String, String> queryParameter : queryParameters.entrySet()) {
-        queryAndFragmentStringBuilder
-            .append(queryParameter.getKey())
-            .append("=")
-            .append(queryParameter.getValue());
-        if (i != size) {
-          queryAndFragmentStringBuilder.append("&");
+      return true;
+    }
+    if (schema != null) {
+      for (Object value : schemaValues) {
+        if (value != null) {
+          return true;
         }
-        i++;
       }
     }
+    return false;
+  }
 
-    if (!fragment.isEmpty()) {
-      queryAndFragmentStringBuilder.append("#").append(fragment);
+  /** Returns the declared query parameters in the declared order and the others. */
+  private Map<String, Object> allQueryParameters() {
+    if (schema == null) {
+      return queryParameters;
     }
 
-    uriString += queryAndFragmentStringBuilder.toString();
+    final Map<String, Object> all = new LinkedHashMap<>();
+    for (int slot = 0; slot < schemaValues.length; slot++) {
+      if (schemaValues[slot] != null) {
+        all.put(schema.encodedNameOf(slot), schemaValues[slot]);
+      }
+    }
+    all.putAll(queryParameters);
+    return all;
+  }
 
-    // slashes
-    if (!scheme.isEmpty()) {
-      String glue = "://";
-      if (uriString.charAt(0) == '/') {
-        glue = ":/"; // the second slash for scheme exists in uriString, so reduced
+  /**
+   * Append query parameters which precede the key to {@code prefix}, and ones which follow it to
+   * {@code suffix} with leading "&"; the parameter which has the same key is skipped.
+   *
+   * @return true if any parameter is appended to {@code prefix}
+   */
+  private boolean appendQueryStringAround(
+      String encodedKey, StringBuilder prefix, StringBuilder suffix) {
+    boolean hasPrecedingPairs = appendSchemaValues(prefix, encodedKey);
+    for (Entry<String, Object> queryParameter : queryParameters.entrySet()) {
+      final String queryKey = queryParameter.getKey();
+      final int cmp = queryKey.compareTo(encodedKey);
+      if (cmp < 0) {
+        appendQueryPair(prefix, !hasPrecedingPairs, queryKey, queryParameter.getValue());
+        hasPrecedingPairs = true;
+      } else if (cmp > 0) {
+        appendQueryPair(suffix, false, queryKey, queryParameter.getValue());
       }
-      uriString = scheme + glue + uriString;
     }
+    return hasPrecedingPairs;
+  }
 
-    return URI.create(uriString);
+  private static void appendQueryPair(StringBuilder sb, boolean isFirst, String key, Object value) {
+    if (!isFirst) {
+      sb.append("&");
+    }
+    sb.append(key).append("=");
+    DeferredEntity.append(sb, value);
+  }
+
+  private void appendFragment(StringBuilder sb) {
+    appendNonEmpty(sb, '#', fragment);
+  }
+
+  /** Append the prefix and the entity unless the entity is empty. */
+  private static void appendNonEmpty(StringBuilder sb, char prefix, Object entity) {
+    final int mark = sb.length();
+    sb.append(prefix);
+    DeferredEntity.append(sb, entity);
+    if (sb.length() == mark + 1) {
+      sb.setLength(mark);
+    }
   }
 }
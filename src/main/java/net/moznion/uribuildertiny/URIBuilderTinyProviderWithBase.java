@@ -1,10 +1,14 @@
 package net.moznion.uribuildertiny;
 
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /** Provider of {@link URIBuilderTiny} with base URI. */
 public class URIBuilderTinyProviderWithBase {
   private final String baseUriString;
+  private final Charset charset;
+  private final URIBuildCache cache; // null if disabled
 
   /**
    * Create instance with base URI string.
@@ -12,7 +16,17 @@ public class URIBuilderTinyProviderWithBase {
    * @param baseUriString base URI string
    */
   public URIBuilderTinyProviderWithBase(String baseUriString) {
-    this.baseUriString = baseUriString;
+    this(baseUriString, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create instance with base URI string.
+   *
+   * @param baseUriString base URI string
+   * @param charset charset of provided builders
+   */
+  public URIBuilderTinyProviderWithBase(String baseUriString, Charset charset) {
+    this(baseUriString, charset, null);
   }
 
   /**
@@ -21,7 +35,50 @@ public class URIBuilderTinyProviderWithBase {
    * @param baseUri base URI
    */
   public URIBuilderTinyProviderWithBase(URI baseUri) {
-    baseUriString = baseUri.toString();
+    this(baseUri.toString());
+  }
+
+  /**
+   * Create instance with base URI.
+   *
+   * @param baseUri base URI
+   * @param charset charset of provided builders
+   */
+  public URIBuilderTinyProviderWithBase(URI baseUri, Charset charset) {
+    this(baseUri.toString(), charset);
+  }
+
+  private URIBuilderTinyProviderWithBase(
+      String baseUriString, Charset charset, URIBuildCache cache) {
+    this.baseUriString = baseUriString;
+    this.charset = charset;
+    this.cache = cache;
+  }
+
+  /**
+   * Create a provider which has the same base URI and a cache of built URIs.
+   *
+   * <p>URIs which are built by {@link #build(URIBuilderTiny)} are cached by the inputs of
+   * components of the builder, so identical inputs return the same {@link URI} instance without
+   * encoding and parsing again.
+   *
+   * <p>Builders provided by the new provider are in the deferred encoding mode (see {@link
+   * URIBuilderTiny#deferEncoding(boolean)}) so that a hit costs only comparing the inputs. Built
+   * URIs and the values returned by {@link URIBuilderTiny#getPaths()} and {@link
+   * URIBuilderTiny#getQueryParameters()} are same as the ones of the default mode, but those
+   * getters percent-encode the values on every call instead of on setting.
+   *
+   * @param maximumSize maximum number of cached URIs; one which isn't used recently is evicted
+   * @return new provider which is safe to share between threads
+   */
+  public URIBuilderTinyProviderWithBase withCache(int maximumSize) {
+    return new URIBuilderTinyProviderWithBase(
+        baseUriString, charset, new URIBuildCache(maximumSize));
+  }
+
+  /** Returns the cache of built URIs, or null if it is disabled. */
+  public URIBuildCache getCache() {
+    return cache;
   }
 
   /**
@@ -30,6 +87,22 @@ public class URIBuilderTinyProviderWithBase {
    * @return an instance of {@link URIBuilderTiny}
    */
   public URIBuilderTiny getBuilder() {
-    return new URIBuilderTiny(baseUriString);
+    final URIBuilderTiny builder = new URIBuilderTiny(baseUriString, charset);
+    return cache == null ? builder : builder.deferEncoding(true);
+  }
+
+  /**
+   * Build a URI by the builder, or get the cached one which is built from the same inputs.
+   *
+   * <p>It is same as {@link URIBuilderTiny#build()} if the cache is disabled. A builder which has a
+   * value which is read on every building (a mutable {@link CharSequence} or an {@link
+   * EntityWriter}) is always built and not cached; other objects are stringified on setting, so
+   * they are cached by the string.
+   *
+   * @param builder builder; it can be one which isn't provided by this
+   * @return built URI
+   */
+  public URI build(URIBuilderTiny builder) {
+    return cache == null ? builder.build() : cache.build(builder);
   }
 }
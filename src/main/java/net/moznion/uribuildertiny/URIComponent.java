@@ -0,0 +1,11 @@
+package net.moznion.uribuildertiny;
+
+/** Components of URI. */
+public enum URIComponent {
+  SCHEME,
+  HOST,
+  PORT,
+  PATH,
+  QUERY,
+  FRAGMENT,
+}
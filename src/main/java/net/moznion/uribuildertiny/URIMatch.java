@@ -0,0 +1,244 @@
+package net.moznion.uribuildertiny;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Result of {@link URIPatternMatcher#match(String)}.
+ *
+ * <p>This holds only offsets of variables in the matched string; a variable is cut out when it is
+ * requested and decoded only by {@link #getVariable(String)}. Query is not parsed until a parameter
+ * is requested.
+ */
+public final class URIMatch {
+  private final String input;
+  private final int pathEnd;
+
+  /** Matched pattern. */
+  @Getter private final String pattern;
+
+  /** Index of the matched pattern in {@link URIPatternMatcher#getPatterns()}. */
+  @Getter private final int patternIndex;
+
+  private final String[] variableNames;
+  private final int[] offsets; // beginning and end of each variable
+
+  URIMatch(
+      String input,
+      int pathEnd,
+      String pattern,
+      int patternIndex,
+      String[] variableNames,
+      int[] offsets) {
+    this.input = input;
+    this.pathEnd = pathEnd;
+    this.pattern = pattern;
+    this.patternIndex = patternIndex;
+    this.variableNames = variableNames;
+    this.offsets = offsets;
+  }
+
+  /** Returns the number of variables in the pattern. */
+  public int getVariableCount() {
+    return variableNames.length;
+  }
+
+  /** Returns the name of the i-th variable of the pattern. */
+  public String getVariableName(int i) {
+    return variableNames[i];
+  }
+
+  /** Returns the beginning index (inclusive) of the i-th variable in the matched string. */
+  public int getVariableStart(int i) {
+    return offsets[checkVariableIndex(i) * 2];
+  }
+
+  /** Returns the ending index (exclusive) of the i-th variable in the matched string. */
+  public int getVariableEnd(int i) {
+    return offsets[checkVariableIndex(i) * 2 + 1];
+  }
+
+  /**
+   * Get the value of a variable as is; it is still percent-encoded.
+   *
+   * @param name variable name
+   * @return raw value, or null if the pattern doesn't have the variable
+   */
+  public String getRawVariable(@NonNull String name) {
+    final int i = indexOf(name);
+    return i < 0 ? null : input.substring(offsets[i * 2], offsets[i * 2 + 1]);
+  }
+
+  /**
+   * Get the value of a variable which is decoded as UTF-8. "+" is not decoded since it is in path.
+   *
+   * @param name variable name
+   * @return decoded value, or null if the pattern doesn't have the variable
+   */
+  public String getVariable(@NonNull String name) {
+    final int i = indexOf(name);
+    return i < 0 ? null : PercentDecoder.decode(input, offsets[i * 2], offsets[i * 2 + 1], false);
+  }
+
+  /** Returns the raw query without "?", or null if absent. */
+  public String getRawQuery() {
+    final int queryEnd = queryEnd();
+    return queryEnd < 0 ? null : input.substring(pathEnd + 1, queryEnd);
+  }
+
+  /**
+   * Get the first value of a query parameter as is; it is still percent-encoded.
+   *
+   * <p>The key is compared with raw keys after percent-encoding in the same manner as {@link
+   * URIBuilderTiny#addQueryParameter(String, Object)}.
+   *
+   * @param key parameter name (not encoded)
+   * @return raw value, empty if the parameter doesn't have "=", or null if absent
+   */
+  public String getRawQueryParameter(@NonNull String key) {
+    final int queryEnd = queryEnd();
+    if (queryEnd < 0) {
+      return null;
+    }
+
+    final String encodedKey = UTF8PercentEncoder.encode(key);
+    final int keyLength = encodedKey.length();
+    int pairStart = pathEnd + 1;
+    while (pairStart <= queryEnd) {
+      int pairEnd = input.indexOf('&', pairStart);
+      if (pairEnd < 0 || pairEnd > queryEnd) {
+        pairEnd = queryEnd;
+      }
+
+      if (input.regionMatches(pairStart, encodedKey, 0, keyLength)) {
+        final int keyEnd = pairStart + keyLength;
+        if (keyEnd == pairEnd) {
+          return "";
+        }
+        if (input.charAt(keyEnd) == '=') {
+          return input.substring(keyEnd + 1, pairEnd);
+        }
+      }
+      pairStart = pairEnd + 1;
+    }
+    return null;
+  }
+
+  /**
+   * Get the first value of a query parameter which is decoded as UTF-8. "+" is decoded as space.
+   *
+   * @param key parameter name (not encoded)
+   * @return decoded value, empty if the parameter doesn't have "=", or null if absent
+   * @see #getRawQueryParameter(String)
+   */
+  public String getQueryParameter(@NonNull String key) {
+    final String raw = getRawQueryParameter(key);
+    return raw == null ? null : PercentDecoder.decode(raw, 0, raw.length(), true);
+  }
+
+  /**
+   * Create a builder which has the matched path, query and fragment as raw components.
+   *
+   * <p>The query is copied into query parameters of the builder, which are keyed and sorted, so it
+   * isn't kept verbatim: pairs are sorted by key, only the last value of a repeated key is kept,
+   * and a key without "=" gets an empty value. Use {@link #getRawQuery()} if the query must be
+   * forwarded as is.
+   *
+   * @return new builder; scheme and host are empty
+   */
+  public URIBuilderTiny toBuilder() {
+    return withQueryAndFragment(
+        new URIBuilderTiny().setRawPathsByString(input.substring(0, pathEnd)));
+  }
+
+  /**
+   * Create a builder whose path is the given pattern filled with variables of this match.
+   *
+   * <p>Variables are put as raw values so they are not decoded and encoded again. Query and
+   * fragment of the matched string are copied in the same manner as {@link #toBuilder()}.
+   *
+   * @param pattern pattern of the new path; e.g. {@code /v2/orders/{orderId}}
+   * @return new builder; scheme and host are empty
+   * @throws IllegalArgumentException if the pattern has a variable which this match doesn't have
+   */
+  public URIBuilderTiny rewrite(@NonNull String pattern) {
+    final List<String> paths = new ArrayList<>();
+    for (String segment : pattern.split("/", -1)) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+      if (segment.length() > 2 && segment.charAt(0) == '{' && segment.endsWith("}")) {
+        final String name = segment.substring(1, segment.length() - 1);
+        final String value = getRawVariable(name);
+        if (value == null) {
+          throw new IllegalArgumentException("Unknown variable \"" + name + "\" in: " + pattern);
+        }
+        paths.add(value);
+      } else {
+        paths.add(segment);
+      }
+    }
+    return withQueryAndFragment(new URIBuilderTiny().setRawPaths(paths));
+  }
+
+  private URIBuilderTiny withQueryAndFragment(URIBuilderTiny builder) {
+    final int queryEnd = queryEnd();
+    if (queryEnd >= 0) {
+      int pairStart = pathEnd + 1;
+      while (pairStart < queryEnd) {
+        int pairEnd = input.indexOf('&', pairStart);
+        if (pairEnd < 0 || pairEnd > queryEnd) {
+          pairEnd = queryEnd;
+        }
+        if (pairEnd > pairStart) {
+          final int equal = input.indexOf('=', pairStart);
+          if (equal < 0 || equal > pairEnd) {
+            builder.addRawQueryParameter(input.substring(pairStart, pairEnd), "");
+          } else {
+            builder.addRawQueryParameter(
+                input.substring(pairStart, equal), input.substring(equal + 1, pairEnd));
+          }
+        }
+        pairStart = pairEnd + 1;
+      }
+    }
+
+    final int fragmentStart = input.indexOf('#', pathEnd);
+    if (fragmentStart >= 0) {
+      builder.setRawFragment(input.substring(fragmentStart + 1));
+    }
+    return builder;
+  }
+
+  /** Returns the index of "#" or the end of input, or -1 if there is no query. */
+  private int queryEnd() {
+    if (pathEnd == input.length() || input.charAt(pathEnd) != '?') {
+      return -1;
+    }
+    final int fragmentStart = input.indexOf('#', pathEnd);
+    return fragmentStart < 0 ? input.length() : fragmentStart;
+  }
+
+  private int indexOf(String name) {
+    for (int i = 0; i < variableNames.length; i++) {
+      if (variableNames[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int checkVariableIndex(int i) {
+    if (i < 0 || i >= variableNames.length) {
+      throw new IndexOutOfBoundsException("Variable index: " + i);
+    }
+    return i;
+  }
+
+  @Override
+  public String toString() {
+    return "URIMatch(" + pattern + ": " + input + ")";
+  }
+}
@@ -0,0 +1,256 @@
+package net.moznion.uribuildertiny;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+
+/**
+ * Matcher of raw URI paths against a set of patterns such as {@code /users/{id}/orders/{orderId}}.
+ *
+ * <p>Patterns are compiled into a trie of path segments, so a path is matched by one scan without
+ * regular expressions, whatever the number of patterns is. A segment is either a literal, which is
+ * compared with the raw (not decoded) segment, or a variable which is written as {@code {name}} and
+ * matches any non-empty segment. A literal segment is preferred to a variable; if the rest of the
+ * path doesn't match after a literal, the variable is tried instead.
+ *
+ * <p>Empty segments are ignored both in patterns and in paths (same as building by {@link
+ * URIBuilderTiny}), so {@code /users//1/} matches {@code /users/{id}}.
+ *
+ * <p>An instance is immutable and thread-safe.
+ */
+public final class URIPatternMatcher {
+  private final List<String> patterns;
+  private final String[][] variableNames; // per pattern
+  private final Node root;
+  private final int maxVariableCount;
+
+  private URIPatternMatcher(List<String> patterns) {
+    this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+    variableNames = new String[patterns.size()][];
+
+    final NodeBuilder rootBuilder = new NodeBuilder();
+    int maxVariableCount = 0;
+    for (int i = 0; i < patterns.size(); i++) {
+      final String pattern = patterns.get(i);
+      final List<String> names = new ArrayList<>();
+      NodeBuilder node = rootBuilder;
+      for (String segment : pattern.split("/", -1)) {
+        if (segment.isEmpty()) {
+          continue;
+        }
+
+        final String name = variableNameOf(pattern, segment);
+        if (name == null) {
+          node = node.literals.computeIfAbsent(segment, s -> new NodeBuilder());
+        } else {
+          if (names.contains(name)) {
+            throw new IllegalArgumentException(
+                "Duplicated variable \"" + name + "\" in pattern: " + pattern);
+          }
+          names.add(name);
+          if (node.variable == null) {
+            node.variable = new NodeBuilder();
+          }
+          node = node.variable;
+        }
+      }
+
+      if (node.patternIndex >= 0) {
+        throw new IllegalArgumentException(
+            "Pattern " + pattern + " conflicts with " + patterns.get(node.patternIndex));
+      }
+      node.patternIndex = i;
+      variableNames[i] = names.toArray(new String[0]);
+      maxVariableCount = Math.max(maxVariableCount, names.size());
+    }
+
+    root = rootBuilder.build();
+    this.maxVariableCount = maxVariableCount;
+  }
+
+  /**
+   * Compile patterns.
+   *
+   * @param patterns patterns; the index of each pattern is reported by {@link
+   *     URIMatch#getPatternIndex()}
+   * @return compiled matcher
+   * @throws IllegalArgumentException if a pattern is malformed or two patterns match the same paths
+   */
+  public static URIPatternMatcher compile(@NonNull String... patterns) {
+    return compile(Arrays.asList(patterns));
+  }
+
+  /**
+   * Compile patterns.
+   *
+   * @param patterns patterns; the index of each pattern is reported by {@link
+   *     URIMatch#getPatternIndex()}
+   * @return compiled matcher
+   * @throws IllegalArgumentException if a pattern is malformed or two patterns match the same paths
+   */
+  public static URIPatternMatcher compile(@NonNull List<String> patterns) {
+    return new URIPatternMatcher(patterns);
+  }
+
+  /** Returns the compiled patterns in the order of compiling. */
+  public List<String> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * Match a raw URI reference against the patterns.
+   *
+   * <p>The path is the part of the argument before "?" or "#"; the rest is kept as query and
+   * fragment of the result. The argument must not contain scheme and authority.
+   *
+   * @param rawPathAndQuery raw path, optionally followed by query and fragment; e.g. {@code
+   *     /users/1?sort=asc}
+   * @return the result, or null if no pattern matches
+   */
+  public URIMatch match(@NonNull String rawPathAndQuery) {
+    final int length = rawPathAndQuery.length();
+    int pathEnd = 0;
+    while (pathEnd < length) {
+      final char c = rawPathAndQuery.charAt(pathEnd);
+      if (c == '?' || c == '#') {
+        break;
+      }
+      pathEnd++;
+    }
+
+    final int[] offsets = new int[maxVariableCount * 2];
+    final int patternIndex = match(root, rawPathAndQuery, 0, pathEnd, offsets, 0);
+    if (patternIndex < 0) {
+      return null;
+    }
+
+    final String[] names = variableNames[patternIndex];
+    return new URIMatch(
+        rawPathAndQuery,
+        pathEnd,
+        patterns.get(patternIndex),
+        patternIndex,
+        names,
+        names.length * 2 == offsets.length ? offsets : Arrays.copyOf(offsets, names.length * 2));
+  }
+
+  private static int match(
+      Node node, String path, int position, int pathEnd, int[] offsets, int variableIndex) {
+    while (position < pathEnd && path.charAt(position) == '/') {
+      position++;
+    }
+    if (position == pathEnd) {
+      return node.patternIndex;
+    }
+
+    int segmentEnd = position;
+    while (segmentEnd < pathEnd && path.charAt(segmentEnd) != '/') {
+      segmentEnd++;
+    }
+
+    final Node literal = node.findLiteral(path, position, segmentEnd);
+    if (literal != null) {
+      final int found = match(literal, path, segmentEnd, pathEnd, offsets, variableIndex);
+      if (found >= 0) {
+        return found;
+      }
+    }
+
+    if (node.variable != null) {
+      final int found = match(node.variable, path, segmentEnd, pathEnd, offsets, variableIndex + 1);
+      if (found >= 0) {
+        offsets[variableIndex * 2] = position;
+        offsets[variableIndex * 2 + 1] = segmentEnd;
+        return found;
+      }
+    }
+    return -1;
+  }
+
+  private static String variableNameOf(String pattern, String segment) {
+    final int open = segment.indexOf('{');
+    final int close = segment.indexOf('}');
+    if (open < 0 && close < 0) {
+      return null;
+    }
+    if (open != 0 || close != segment.length() - 1 || segment.length() == 2) {
+      throw new IllegalArgumentException(
+          "Variable must be a whole segment as \"{name}\": " + pattern);
+    }
+
+    final String name = segment.substring(1, segment.length() - 1);
+    if (name.indexOf('{') >= 0 || name.indexOf('}') >= 0) {
+      throw new IllegalArgumentException("Malformed variable in pattern: " + pattern);
+    }
+    return name;
+  }
+
+  private static int hashOf(String s, int start, int end) {
+    // same as String#hashCode()
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + s.charAt(i);
+    }
+    return hash;
+  }
+
+  private static final class NodeBuilder {
+    private final Map<String, NodeBuilder> literals = new HashMap<>();
+    private NodeBuilder variable;
+    private int patternIndex = -1;
+
+    private Node build() {
+      // open addressing with linear probing; load factor is 0.5 at most
+      int capacity = 1;
+      while (capacity < literals.size() * 2) {
+        capacity <<= 1;
+      }
+      final String[] keys = new String[literals.isEmpty() ? 0 : capacity];
+      final Node[] children = new Node[keys.length];
+      for (Map.Entry<String, NodeBuilder> entry : literals.entrySet()) {
+        int slot = entry.getKey().hashCode() & (keys.length - 1);
+        while (keys[slot] != null) {
+          slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = entry.getKey();
+        children[slot] = entry.getValue().build();
+      }
+
+      return new Node(keys, children, variable == null ? null : variable.build(), patternIndex);
+    }
+  }
+
+  private static final class Node {
+    private final String[] literalKeys;
+    private final Node[] literalChildren;
+    private final Node variable;
+    private final int patternIndex;
+
+    private Node(String[] literalKeys, Node[] literalChildren, Node variable, int patternIndex) {
+      this.literalKeys = literalKeys;
+      this.literalChildren = literalChildren;
+      this.variable = variable;
+      this.patternIndex = patternIndex;
+    }
+
+    private Node findLiteral(String path, int start, int end) {
+      if (literalKeys.length == 0) {
+        return null;
+      }
+
+      final int length = end - start;
+      int slot = hashOf(path, start, end) & (literalKeys.length - 1);
+      for (String key = literalKeys[slot]; key != null; key = literalKeys[slot]) {
+        if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+          return literalChildren[slot];
+        }
+        slot = (slot + 1) & (literalKeys.length - 1);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package net.moznion.uribuildertiny;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import lombok.NonNull;
+
+/**
+ * Sequence of URIs which differ only in the value of a query parameter; created by {@link
+ * URIBuilderTiny#buildSequence(String)}.
+ *
+ * <p>It holds the serialised URI before and after the value, so a URI of the sequence costs only
+ * copying them and rendering the value. Streams are lazy; a URI is rendered when it is consumed.
+ *
+ * <pre>{@code
+ * URISequence pages = new URIBuilderTiny("https://api.example.com/items?limit=50")
+ *     .buildSequence("offset");
+ * pages.stream(0, total, 50).forEach(...); // ?limit=50&offset=0, ?limit=50&offset=50, ...
+ * }</pre>
+ *
+ * <p>An instance is immutable and thread-safe.
+ */
+public final class URISequence {
+  private final String prefix; // ends with "key="
+  private final String suffix;
+  private final URLEncoder urlEncoder;
+
+  URISequence(String prefix, String suffix, URLEncoder urlEncoder) {
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.urlEncoder = urlEncoder;
+  }
+
+  /** Returns the URI string which has the number as the value. */
+  public String buildString(long value) {
+    return new StringBuilder(prefix.length() + 20 + suffix.length())
+        .append(prefix)
+        .append(value)
+        .append(suffix)
+        .toString();
+  }
+
+  /**
+   * Returns the URI string which has the value; it is stringified and percent-encoded.
+   *
+   * @param value value of the parameter
+   */
+  public String buildString(@NonNull Object value) {
+    final String encodedValue = urlEncoder.encode(value);
+    return new StringBuilder(prefix.length() + encodedValue.length() + suffix.length())
+        .append(prefix)
+        .append(encodedValue)
+        .append(suffix)
+        .toString();
+  }
+
+  /** Returns the URI which has the number as the value. */
+  public URI build(long value) {
+    return URI.create(buildString(value));
+  }
+
+  /** Returns the URI which has the value; it is stringified and percent-encoded. */
+  public URI build(@NonNull Object value) {
+    return URI.create(buildString(value));
+  }
+
+  /**
+   * Returns URI strings whose values are from {@code startInclusive} to {@code endExclusive} by
+   * {@code step}.
+   *
+   * @throws IllegalArgumentException if the step is not positive
+   */
+  public Stream<String> strings(long startInclusive, long endExclusive, long step) {
+    if (step <= 0) {
+      throw new IllegalArgumentException("Step must be positive: " + step);
+    }
+
+    final long count =
+        endExclusive <= startInclusive ? 0 : (endExclusive - startInclusive - 1) / step + 1;
+    return LongStream.range(0, count).mapToObj(i -> buildString(startInclusive + i * step));
+  }
+
+  /** Returns URIs whose values are from {@code startInclusive} to {@code endExclusive} by one. */
+  public Stream<URI> stream(long startInclusive, long endExclusive) {
+    return stream(startInclusive, endExclusive, 1);
+  }
+
+  /**
+   * Returns URIs whose values are from {@code startInclusive} to {@code endExclusive} by {@code
+   * step}; e.g. {@code stream(0, total, limit)} for offsets of pages.
+   *
+   * @throws IllegalArgumentException if the step is not positive
+   */
+  public Stream<URI> stream(long startInclusive, long endExclusive, long step) {
+    return strings(startInclusive, endExclusive, step).map(URI::create);
+  }
+
+  /** Returns an iterator of {@link #stream(long, long, long)}. */
+  public Iterator<URI> iterator(long startInclusive, long endExclusive, long step) {
+    return stream(startInclusive, endExclusive, step).iterator();
+  }
+
+  @Override
+  public String toString() {
+    return "URISequence(" + prefix + "{value}" + suffix + ")";
+  }
+}
@@ -0,0 +1,92 @@
+package net.moznion.uribuildertiny;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Signer of URI for {@link URIBuilderTiny#buildSigned(URISigner, long)}.
+ *
+ * <p>This calculates HMAC over the canonical form of URI and encodes it as URL-safe base64 without
+ * padding. An instance is thread-safe; each thread reuses its own {@link Mac} which is initialised
+ * with the key in advance.
+ */
+public class URISigner {
+  private static final String DEFAULT_EXPIRES_PARAMETER_NAME = "expires";
+  private static final String DEFAULT_SIGNATURE_PARAMETER_NAME = "signature";
+
+  @Getter private final String expiresParameterName;
+  @Getter private final String signatureParameterName;
+
+  private final SecretKeySpec secretKey;
+  private final Mac prototypeMac;
+  private final ThreadLocal<Mac> macs;
+
+  /**
+   * Create instance with the default parameter names ("expires" and "signature").
+   *
+   * @param algorithm MAC algorithm name; e.g. "HmacSHA256"
+   * @param key secret key
+   */
+  public URISigner(@NonNull String algorithm, @NonNull byte[] key) {
+    this(algorithm, key, DEFAULT_EXPIRES_PARAMETER_NAME, DEFAULT_SIGNATURE_PARAMETER_NAME);
+  }
+
+  /**
+   * Create instance.
+   *
+   * <p>Parameter names are put into URI as raw string.
+   *
+   * @param algorithm MAC algorithm name; e.g. "HmacSHA256"
+   * @param key secret key
+   * @param expiresParameterName name of the query parameter for expiry
+   * @param signatureParameterName name of the query parameter for signature
+   */
+  public URISigner(
+      @NonNull String algorithm,
+      @NonNull byte[] key,
+      @NonNull String expiresParameterName,
+      @NonNull String signatureParameterName) {
+    this.expiresParameterName = expiresParameterName;
+    this.signatureParameterName = signatureParameterName;
+
+    secretKey = new SecretKeySpec(key, algorithm);
+    try {
+      prototypeMac = Mac.getInstance(algorithm);
+      prototypeMac.init(secretKey);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException(e);
+    }
+    macs = ThreadLocal.withInitial(this::newMac);
+  }
+
+  /**
+   * Calculate the signature of the canonical string.
+   *
+   * @param canonical canonical form of URI
+   * @return URL-safe base64 encoded signature
+   */
+  public String sign(@NonNull String canonical) {
+    final byte[] signature = macs.get().doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+  }
+
+  private Mac newMac() {
+    try {
+      return (Mac) prototypeMac.clone();
+    } catch (CloneNotSupportedException e) {
+      // fallback for the provider which doesn't support cloning
+      try {
+        final Mac mac = Mac.getInstance(secretKey.getAlgorithm());
+        mac.init(secretKey);
+        return mac;
+      } catch (GeneralSecurityException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+}
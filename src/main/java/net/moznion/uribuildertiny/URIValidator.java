@@ -0,0 +1,303 @@
+package net.moznion.uribuildertiny;
+
+/**
+ * Validator of URI components with the same character classes as {@link java.net.URI}.
+ *
+ * <p>This scans each component once and reports the first invalid character without throwing any
+ * exception. Paths, query and fragment are scanned in the built URI string, so their values are
+ * not stringified again.
+ */
+final class URIValidator {
+  private static final String REASON_ILLEGAL_CHARACTER = "Illegal character";
+  private static final String REASON_MALFORMED_ESCAPE = "Malformed escape pair";
+
+  // character classes of RFC 2396 (as java.net.URI deals)
+  private static final long L_ALPHA = 0L;
+  private static final long H_ALPHA = (0x3FFFFFFL << ('A' - 64)) | (0x3FFFFFFL << ('a' - 64));
+  private static final long L_DIGIT = 0x3FFL << '0';
+  private static final long H_DIGIT = 0L;
+  private static final long L_HEX = L_DIGIT;
+  private static final long H_HEX = (0x3FL << ('A' - 64)) | (0x3FL << ('a' - 64));
+  private static final long L_UNRESERVED =
+      L_DIGIT
+          | (1L << '-')
+          | (1L << '.')
+          | (1L << '!')
+          | (1L << '*')
+          | (1L << '\'')
+          | (1L << '(')
+          | (1L << ')');
+  private static final long H_UNRESERVED = H_ALPHA | (1L << ('_' - 64)) | (1L << ('~' - 64));
+  private static final long L_PCHAR =
+      L_UNRESERVED
+          | (1L << ':')
+          | (1L << '&')
+          | (1L << '=')
+          | (1L << '+')
+          | (1L << '$')
+          | (1L << ',');
+  private static final long H_PCHAR = H_UNRESERVED | (1L << ('@' - 64));
+  private static final long L_PATH = L_PCHAR | (1L << ';') | (1L << '/');
+  private static final long H_PATH = H_PCHAR;
+  private static final long L_REG_NAME = L_PCHAR | (1L << ';');
+  private static final long H_REG_NAME = H_PCHAR;
+  private static final long L_URIC = L_PCHAR | (1L << ';') | (1L << '/') | (1L << '?');
+  private static final long H_URIC = H_PCHAR | (1L << ('[' - 64)) | (1L << (']' - 64));
+  private static final long L_SCHEME = L_DIGIT | (1L << '+') | (1L << '-') | (1L << '.');
+  private static final long H_SCHEME = H_ALPHA;
+  private static final long L_FIRST_SEGMENT = (L_PCHAR | (1L << ';')) & ~(1L << ':');
+  private static final long H_FIRST_SEGMENT = H_PCHAR;
+  private static final long L_IPV6 = L_HEX | (1L << ':') | (1L << '.');
+  private static final long H_IPV6 = H_HEX;
+
+  private URIValidator() {}
+
+  /**
+   * Validate components.
+   *
+   * @param uri built URI string
+   * @param pathStart index where paths start in {@code uri}
+   * @param queryStart index where query starts in {@code uri} (after "?"), or -1 if no query
+   * @param fragmentStart index where fragment starts in {@code uri} (after "#"), or -1 if no
+   *     fragment
+   * @return failure result, or null if all components are valid
+   */
+  static URIBuildResult validate(
+      String scheme,
+      String host,
+      int port,
+      CharSequence uri,
+      int pathStart,
+      int queryStart,
+      int fragmentStart) {
+    if (!scheme.isEmpty()) {
+      if (!match(scheme.charAt(0), L_ALPHA, H_ALPHA)) {
+        return URIBuildResult.failure(URIComponent.SCHEME, 0, REASON_ILLEGAL_CHARACTER);
+      }
+      final int invalidAt = scan(scheme, 1, scheme.length(), L_SCHEME, H_SCHEME, false);
+      if (invalidAt >= 0) {
+        return URIBuildResult.failure(URIComponent.SCHEME, invalidAt, REASON_ILLEGAL_CHARACTER);
+      }
+    }
+
+    int hostLength = host.length();
+    if (hostLength > 0 && host.charAt(hostLength - 1) == '/') { // trailing slash marker
+      hostLength--;
+    }
+    if (scheme.isEmpty() && hostLength > 0) {
+      // without scheme, host is dealt as the first segment of relative path; e.g. "example.com/foo"
+      if (port >= 0) {
+        return URIBuildResult.failure(URIComponent.PORT, 0, "Port without scheme");
+      }
+      final URIBuildResult failure =
+          scanComponent(
+              URIComponent.HOST, host, 0, hostLength, 0, L_FIRST_SEGMENT, H_FIRST_SEGMENT);
+      if (failure != null) {
+        return failure;
+      }
+    } else if (hostLength > 0 && host.charAt(0) == '[') {
+      if (host.charAt(hostLength - 1) != ']') {
+        return URIBuildResult.failure(URIComponent.HOST, hostLength, "Expected closing bracket");
+      }
+      final int invalidAt = scan(host, 1, hostLength - 1, L_IPV6, H_IPV6, false);
+      if (invalidAt >= 0) {
+        return URIBuildResult.failure(URIComponent.HOST, invalidAt, REASON_ILLEGAL_CHARACTER);
+      }
+      if (!isIPv6Address(host, 1, hostLength - 1)) {
+        return URIBuildResult.failure(URIComponent.HOST, 1, "Malformed IPv6 address");
+      }
+    } else {
+      final URIBuildResult failure =
+          scanComponent(URIComponent.HOST, host, 0, hostLength, 0, L_REG_NAME, H_REG_NAME);
+      if (failure != null) {
+        return failure;
+      }
+    }
+
+    if (hostLength == 0 && port >= 0 && scheme.isEmpty()) {
+      return URIBuildResult.failure(URIComponent.PORT, 0, "Port without host and scheme");
+    }
+
+    // "&" and "=" are in the class of query, so the query is scanned as a whole
+    final int fragmentEnd = uri.length();
+    final int queryEnd = fragmentStart >= 0 ? fragmentStart - 1 : fragmentEnd;
+    final int pathEnd = queryStart >= 0 ? queryStart - 1 : queryEnd;
+    URIBuildResult failure =
+        scanComponent(URIComponent.PATH, uri, pathStart, pathEnd, -pathStart, L_PATH, H_PATH);
+    if (failure != null) {
+      return failure;
+    }
+    if (queryStart >= 0) {
+      failure =
+          scanComponent(URIComponent.QUERY, uri, queryStart, queryEnd, -queryStart, L_URIC, H_URIC);
+      if (failure != null) {
+        return failure;
+      }
+    }
+    if (fragmentStart >= 0) {
+      failure =
+          scanComponent(
+              URIComponent.FRAGMENT,
+              uri,
+              fragmentStart,
+              fragmentEnd,
+              -fragmentStart,
+              L_URIC,
+              H_URIC);
+      if (failure != null) {
+        return failure;
+      }
+    }
+
+    if (!scheme.isEmpty()
+        && hostLength == 0
+        && port < 0
+        && pathEnd == pathStart
+        && queryStart < 0
+        && fragmentStart < 0) {
+      return URIBuildResult.failure(URIComponent.HOST, 0, "Expected authority");
+    }
+    return null;
+  }
+
+  private static URIBuildResult scanComponent(
+      URIComponent component,
+      CharSequence s,
+      int start,
+      int end,
+      int baseOffset,
+      long lowMask,
+      long highMask) {
+    final int invalidAt = scan(s, start, end, lowMask, highMask, true);
+    if (invalidAt < 0) {
+      return null;
+    }
+    final String reason =
+        s.charAt(invalidAt) == '%' ? REASON_MALFORMED_ESCAPE : REASON_ILLEGAL_CHARACTER;
+    return URIBuildResult.failure(component, baseOffset + invalidAt, reason);
+  }
+
+  /**
+   * Returns the index of the first invalid character, or -1 if all characters are valid.
+   *
+   * <p>If {@code allowsEscapeAndOther} is true, escaped octets ("%" HEX HEX) and non-ASCII
+   * characters other than space and control characters are allowed as well.
+   */
+  private static int scan(
+      CharSequence s,
+      int start,
+      int end,
+      long lowMask,
+      long highMask,
+      boolean allowsEscapeAndOther) {
+    int i = start;
+    while (i < end) {
+      final char c = s.charAt(i);
+      if (match(c, lowMask, highMask)) {
+        i++;
+        continue;
+      }
+      if (!allowsEscapeAndOther) {
+        return i;
+      }
+      if (c == '%') {
+        if (i + 2 < end
+            && match(s.charAt(i + 1), L_HEX, H_HEX)
+            && match(s.charAt(i + 2), L_HEX, H_HEX)) {
+          i += 3;
+          continue;
+        }
+        return i;
+      }
+      if (c >= 0x80 && !Character.isSpaceChar(c) && !Character.isISOControl(c)) {
+        i++;
+        continue;
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  /** Validate the address which consists of hex digits, colons and dots. */
+  private static boolean isIPv6Address(String s, int start, int end) {
+    int groups = 0;
+    boolean hasDoubleColon = false;
+    int i = start;
+    if (s.startsWith("::", i)) {
+      hasDoubleColon = true;
+      i += 2;
+    }
+
+    while (i < end) {
+      int j = i;
+      while (j < end && s.charAt(j) != ':') {
+        j++;
+      }
+      final int dot = s.indexOf('.', i);
+      final boolean hasDot = dot >= 0 && dot < j;
+      if (hasDot && j == end) { // trailing IPv4 address
+        if (!isIPv4Address(s, i, end)) {
+          return false;
+        }
+        groups += 2;
+        break;
+      }
+      final int groupLength = j - i;
+      if (hasDot || groupLength < 1 || groupLength > 4) {
+        return false;
+      }
+      groups++;
+
+      if (j == end) {
+        break;
+      }
+      if (s.startsWith("::", j)) {
+        if (hasDoubleColon) {
+          return false;
+        }
+        hasDoubleColon = true;
+        i = j + 2;
+      } else {
+        i = j + 1;
+        if (i == end) {
+          return false; // trailing single colon
+        }
+      }
+    }
+    return hasDoubleColon ? groups < 8 : groups == 8;
+  }
+
+  private static boolean isIPv4Address(String s, int start, int end) {
+    int octets = 0;
+    int i = start;
+    while (i <= end) {
+      int value = 0;
+      int digits = 0;
+      while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+        value = value * 10 + (s.charAt(i++) - '0');
+        digits++;
+      }
+      if (digits == 0 || digits > 3 || value > 255) {
+        return false;
+      }
+      octets++;
+      if (i == end) {
+        break;
+      }
+      if (s.charAt(i++) != '.') {
+        return false;
+      }
+    }
+    return octets == 4;
+  }
+
+  private static boolean match(char c, long lowMask, long highMask) {
+    if (c < 64) {
+      return ((1L << c) & lowMask) != 0;
+    }
+    if (c < 128) {
+      return ((1L << (c - 64)) & highMask) != 0;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,48 @@
+package net.moznion.uribuildertiny;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receiver of components which are found by {@link BulkURIParser}.
+ *
+ * <p>Each component is given as offsets in the source buffer which is passed to {@link
+ * #startURI(ByteBuffer, int, int)}; offsets are absolute indices of the buffer, so they can be read
+ * by {@link ByteBuffer#get(int)} without moving its position. Components are not decoded. All
+ * methods do nothing by default; override the ones you need.
+ */
+public interface URIVisitor {
+  /**
+   * Called at the beginning of each URI.
+   *
+   * @param source buffer which contains the URI; it is same for the URIs in a region
+   * @param start beginning index of the URI, inclusive
+   * @param end ending index of the URI, exclusive; line terminators are excluded
+   */
+  default void startURI(ByteBuffer source, int start, int end) {}
+
+  /** Called with the scheme (without ":"). */
+  default void scheme(int start, int end) {}
+
+  /** Called with the host (without userinfo and port); IPv6 address is with brackets. */
+  default void host(int start, int end) {}
+
+  /** Called with the port number. */
+  default void port(int port) {}
+
+  /** Called with each non-empty path segment (without "/") in order. */
+  default void pathSegment(int start, int end) {}
+
+  /**
+   * Called with each non-empty query parameter in order.
+   *
+   * <p>If the parameter doesn't have "=", the value is empty and both of its offsets are {@code
+   * keyEnd}.
+   */
+  default void queryParameter(int keyStart, int keyEnd, int valueStart, int valueEnd) {}
+
+  /** Called with the fragment (without "#"). */
+  default void fragment(int start, int end) {}
+
+  /** Called at the end of each URI. */
+  default void endURI() {}
+}
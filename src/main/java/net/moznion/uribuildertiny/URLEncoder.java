@@ -1,35 +1,68 @@
 package net.moznion.uribuildertiny;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import lombok.NonNull;
 
 class URLEncoder {
   private final EntityURLEncoder entityURLEncoder;
+  private final boolean defersEncoding;
 
   URLEncoder(final EntityURLEncoder entityURLEncoder) {
+    this(entityURLEncoder, false);
+  }
+
+  private URLEncoder(final EntityURLEncoder entityURLEncoder, boolean defersEncoding) {
     this.entityURLEncoder = entityURLEncoder;
+    this.defersEncoding = defersEncoding;
+  }
+
+  /**
+   * Returns the encoder which defers encoding of every entity until building (or not); keys are
+   * still encoded immediately.
+   */
+  URLEncoder withDeferredEncoding(boolean defersEncoding) {
+    if (this.defersEncoding == defersEncoding) {
+      return this;
+    }
+    return new URLEncoder(entityURLEncoder, defersEncoding);
   }
 
   public String encode(@NonNull Object input) {
     return entityURLEncoder.encode(input);
   }
 
-  public List<String> encode(@NonNull List<?> input) {
-    final ArrayList<String> encodedList = new ArrayList<>();
+  /**
+   * Encode an entity, or defer encoding if it is a {@link CharSequence} (except {@link String}) or
+   * an {@link EntityWriter}, or if this encoder defers encoding of every entity. In the latter
+   * case, an object which is not an immutable value is stringified now.
+   *
+   * @return encoded {@link String} or {@link DeferredEntity}
+   */
+  public Object encodeOrDefer(@NonNull Object input) {
+    if (DeferredEntity.isDeferrable(input)) {
+      return new DeferredEntity(input, entityURLEncoder);
+    }
+    if (defersEncoding) {
+      // the string form of a mutable object is taken now, as the default mode does
+      return new DeferredEntity(
+          DeferredEntity.isImmutable(input) ? input : input.toString(), entityURLEncoder);
+    }
+    return encode(input);
+  }
+
+  /** Encode (or defer) each entity and add it to the destination. */
+  public void encodeInto(@NonNull List<?> input, Collection<Object> destination) {
     for (Object item : input) {
-      encodedList.add(encode(item.toString()));
+      destination.add(encodeOrDefer(item));
     }
-    return encodedList;
   }
 
-  public Map<String, String> encode(@NonNull Map<String, ?> input) {
-    final HashMap<String, String> encodedMap = new HashMap<>();
+  /** Encode each key, encode (or defer) each value and put them into the destination. */
+  public void encodeInto(@NonNull Map<String, ?> input, Map<String, Object> destination) {
     for (Map.Entry<String, ?> kv : input.entrySet()) {
-      encodedMap.put(encode(kv.getKey()), encode(kv.getValue()));
+      destination.put(encode(kv.getKey()), encodeOrDefer(kv.getValue()));
     }
-    return encodedMap;
   }
 }
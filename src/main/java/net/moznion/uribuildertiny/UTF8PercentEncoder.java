@@ -0,0 +1,24 @@
+package net.moznion.uribuildertiny;
+
+/**
+ * Percent-encoder for UTF-8 in the same manner as {@link java.net.URLEncoder}.
+ *
+ * <p>This is the Java 8 implementation; the multi-release JAR contains an optimised one for newer
+ * runtimes under {@code META-INF/versions}. Both must produce the same result.
+ */
+final class UTF8PercentEncoder {
+  private UTF8PercentEncoder() {}
+
+  static String encode(String input) {
+    final int length = input.length();
+
+    final int i = UTF8PercentEncodingSink.skipUnreserved(input, 0, length);
+    if (i == length) {
+      return input;
+    }
+
+    final StringBuilder sb = new StringBuilder(length + 16).append(input, 0, i);
+    new UTF8PercentEncodingSink(sb).append(input, i, length).finish();
+    return sb.toString();
+  }
+}
@@ -0,0 +1,162 @@
+package net.moznion.uribuildertiny;
+
+/**
+ * Sink which percent-encodes appended characters as UTF-8 in the same manner as {@link
+ * java.net.URLEncoder}.
+ *
+ * <p>A surrogate pair may be split across appending; a high surrogate at the end is held until the
+ * next character or {@link #finish()}.
+ *
+ * <p>Runs of characters which don't need escaping are found 4 characters at a time: they are packed
+ * into the 16-bit lanes of a long and checked without a branch per character (SWAR; SIMD within a
+ * register), so every value scales with long runs however it is supplied.
+ */
+class UTF8PercentEncodingSink implements EntitySink {
+  // bit masks of characters which are not encoded: "a-zA-Z0-9.-*_"
+  private static final long UNRESERVED_LOW =
+      (1L << '-') | (1L << '.') | (1L << '*') | (0x3FFL << '0');
+  private static final long UNRESERVED_HIGH =
+      (0x3FFFFFFL << ('A' - 64)) | (1L << ('_' - 64)) | (0x3FFFFFFL << ('a' - 64));
+
+  private static final long LANE_ONES = 0x0001000100010001L;
+  private static final long LANE_HIGH_BITS = 0x8000800080008000L;
+
+  private final StringBuilder out;
+  private char pendingHighSurrogate;
+
+  UTF8PercentEncodingSink(StringBuilder out) {
+    this.out = out;
+  }
+
+  static boolean isUnreserved(char c) {
+    if (c < 64) {
+      return (UNRESERVED_LOW & (1L << c)) != 0;
+    }
+    return c < 128 && (UNRESERVED_HIGH & (1L << (c - 64))) != 0;
+  }
+
+  /** Returns the index of the first character which needs escaping, or {@code end}. */
+  static int skipUnreserved(CharSequence input, int start, int end) {
+    int i = start;
+    for (; i + 4 <= end; i += 4) {
+      final long word =
+          input.charAt(i)
+              | (long) input.charAt(i + 1) << 16
+              | (long) input.charAt(i + 2) << 32
+              | (long) input.charAt(i + 3) << 48;
+      final long mask = reservedMask(word);
+      if (mask != 0) {
+        return i + (Long.numberOfTrailingZeros(mask) >>> 4);
+      }
+    }
+    while (i < end && isUnreserved(input.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the mask whose high bit of each 16-bit lane is set if the corresponding character of
+   * the word needs escaping.
+   */
+  private static long reservedMask(long word) {
+    // clear high bits to prevent carries between lanes; such characters are reserved anyway
+    final long x = word & ~LANE_HIGH_BITS;
+    final long unreserved =
+        inRange(x, '0', '9')
+            | inRange(x, 'A', 'Z')
+            | inRange(x, 'a', 'z')
+            | equalTo(x, '*')
+            | equalTo(x, '-')
+            | equalTo(x, '.')
+            | equalTo(x, '_');
+    return (~unreserved | word) & LANE_HIGH_BITS;
+  }
+
+  private static long inRange(long x, int lo, int hi) {
+    final long greaterThanOrEqualToLo = x + LANE_ONES * (0x8000 - lo);
+    final long greaterThanHi = x + LANE_ONES * (0x7FFF - hi);
+    return greaterThanOrEqualToLo & ~greaterThanHi & LANE_HIGH_BITS;
+  }
+
+  private static long equalTo(long x, int c) {
+    final long notEqual = (x ^ (LANE_ONES * c)) + LANE_ONES * 0x7FFF;
+    return ~notEqual & LANE_HIGH_BITS;
+  }
+
+  @Override
+  public EntitySink append(CharSequence csq) {
+    final CharSequence input = csq == null ? "null" : csq;
+    return append(input, 0, input.length());
+  }
+
+  @Override
+  public EntitySink append(CharSequence csq, int start, int end) {
+    final CharSequence input = csq == null ? "null" : csq;
+    int i = start;
+    while (i < end) {
+      if (pendingHighSurrogate == 0) {
+        // copy the run of characters which don't need escaping at once
+        final int runEnd = skipUnreserved(input, i, end);
+        out.append(input, i, runEnd);
+        if (runEnd == end) {
+          break;
+        }
+        i = runEnd;
+      }
+      append(input.charAt(i++));
+    }
+    return this;
+  }
+
+  @Override
+  public EntitySink append(char c) {
+    if (pendingHighSurrogate != 0) {
+      final char high = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        final int codePoint = Character.toCodePoint(high, c);
+        appendEscaped(0xF0 | (codePoint >> 18));
+        appendEscaped(0x80 | ((codePoint >> 12) & 0x3F));
+        appendEscaped(0x80 | ((codePoint >> 6) & 0x3F));
+        appendEscaped(0x80 | (codePoint & 0x3F));
+        return this;
+      }
+      appendEscaped('?'); // malformed; same as the replacement of String#getBytes()
+    }
+
+    if (isUnreserved(c)) {
+      out.append(c);
+    } else if (c == ' ') {
+      out.append('+');
+    } else if (c < 0x80) {
+      appendEscaped(c);
+    } else if (c < 0x800) {
+      appendEscaped(0xC0 | (c >> 6));
+      appendEscaped(0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      appendEscaped('?'); // malformed
+    } else {
+      appendEscaped(0xE0 | (c >> 12));
+      appendEscaped(0x80 | ((c >> 6) & 0x3F));
+      appendEscaped(0x80 | (c & 0x3F));
+    }
+    return this;
+  }
+
+  @Override
+  public void finish() {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      appendEscaped('?'); // malformed
+    }
+  }
+
+  private void appendEscaped(int b) {
+    out.append('%')
+        .append(ConcreteEntityURLEncoder.HEX[(b >> 4) & 0x0F])
+        .append(ConcreteEntityURLEncoder.HEX[b & 0x0F]);
+  }
+}
@@ -0,0 +1,184 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class BulkURIParserTest {
+  private static final String LOG =
+      "https://user@Example.com:8443/a/b%20c/?q=1&flag&&x=y=z#frag\r\n"
+          + "\n"
+          + "/search?q=foo+bar\n"
+          + "http://[::1]:8080\n"
+          + "mailto:someone\n"
+          + "//cdn.example.com/img.png#\n";
+
+  private static final List<String> EXPECTED =
+      Arrays.asList(
+          "scheme=https host=Example.com port=8443 path=a path=b%20c"
+              + " query=q:1 query=flag: query=x:y=z fragment=frag",
+          "path=search query=q:foo+bar",
+          "scheme=http host=[::1] port=8080",
+          "scheme=mailto path=someone",
+          "host=cdn.example.com path=img.png fragment=");
+
+  @Test
+  public void shouldParseByteArraySlice() {
+    byte[] bytes = ("garbage\n" + LOG).getBytes(StandardCharsets.US_ASCII);
+    RecordingVisitor visitor = new RecordingVisitor();
+
+    assertEquals(5, BulkURIParser.parse(bytes, 8, bytes.length - 8, visitor));
+    assertEquals(EXPECTED, visitor.records);
+  }
+
+  @Test
+  public void shouldParseBufferWithoutMovingPosition() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(LOG.length());
+    buffer.put(LOG.getBytes(StandardCharsets.US_ASCII)).flip();
+    RecordingVisitor visitor = new RecordingVisitor();
+
+    assertEquals(5, BulkURIParser.parse(buffer, visitor));
+    assertEquals(EXPECTED, visitor.records);
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void shouldParseMappedFileByWindows() throws Exception {
+    File file = writeLog(LOG + LOG);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      List<String> expected = new ArrayList<>(EXPECTED);
+      expected.addAll(EXPECTED);
+
+      RecordingVisitor visitor = new RecordingVisitor();
+      assertEquals(10, BulkURIParser.parse(channel, 0, channel.size(), visitor));
+      assertEquals(expected, visitor.records);
+
+      RecordingVisitor windowed = new RecordingVisitor();
+      assertEquals(10, BulkURIParser.parse(channel, 0, channel.size(), windowed, 80));
+      assertEquals(expected, windowed.records);
+
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> BulkURIParser.parse(channel, 0, channel.size(), new RecordingVisitor(), 16));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void shouldSplitAtLinesAndParseInParallel() throws Exception {
+    StringBuilder log = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      log.append("/items/").append(i).append("?page=").append(i % 7).append('\n');
+    }
+    File file = writeLog(log.toString());
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long[] boundaries = BulkURIParser.split(channel, 4);
+      assertEquals(5, boundaries.length);
+      assertEquals(0, boundaries[0]);
+      assertEquals(channel.size(), boundaries[4]);
+      for (int i = 1; i < 4; i++) {
+        assertTrue(boundaries[i] >= boundaries[i - 1]);
+        assertEquals('\n', log.charAt((int) boundaries[i] - 1));
+      }
+
+      RecordingVisitor[] visitors = new RecordingVisitor[4];
+      long count =
+          BulkURIParser.parseInParallel(
+              channel, 4, i -> visitors[i] = new RecordingVisitor());
+      assertEquals(1000, count);
+
+      List<String> merged = new ArrayList<>();
+      for (RecordingVisitor visitor : visitors) {
+        merged.addAll(visitor.records);
+      }
+      assertEquals(1000, merged.size());
+      assertEquals("path=items path=0 query=page:0", merged.get(0));
+      assertEquals("path=items path=999 query=page:5", merged.get(999));
+
+      assertArrayEquals(new long[] {0, channel.size()}, BulkURIParser.split(channel, 1));
+      assertThrows(IllegalArgumentException.class, () -> BulkURIParser.split(channel, 0));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void shouldCompareRegionWithoutCopying() {
+    ByteBuffer buffer = ByteBuffer.wrap("/users/12".getBytes(StandardCharsets.US_ASCII));
+
+    assertTrue(BulkURIParser.regionEquals(buffer, 1, 6, "users"));
+    assertTrue(!BulkURIParser.regionEquals(buffer, 1, 6, "user"));
+    assertEquals("12", BulkURIParser.asString(buffer, 7, 9));
+  }
+
+  private static File writeLog(String log) throws Exception {
+    File file = File.createTempFile("bulk-uri-parser", ".log");
+    Files.write(file.toPath(), log.getBytes(StandardCharsets.US_ASCII));
+    return file;
+  }
+
+  private static class RecordingVisitor implements URIVisitor {
+    private final List<String> records = new ArrayList<>();
+    private ByteBuffer source;
+    private StringBuilder record;
+
+    @Override
+    public void startURI(ByteBuffer source, int start, int end) {
+      this.source = source;
+      record = new StringBuilder();
+    }
+
+    @Override
+    public void scheme(int start, int end) {
+      append("scheme=", start, end);
+    }
+
+    @Override
+    public void host(int start, int end) {
+      append("host=", start, end);
+    }
+
+    @Override
+    public void port(int port) {
+      record.append(" port=").append(port);
+    }
+
+    @Override
+    public void pathSegment(int start, int end) {
+      append("path=", start, end);
+    }
+
+    @Override
+    public void queryParameter(int keyStart, int keyEnd, int valueStart, int valueEnd) {
+      append("query=", keyStart, keyEnd);
+      record.append(':').append(BulkURIParser.asString(source, valueStart, valueEnd));
+    }
+
+    @Override
+    public void fragment(int start, int end) {
+      append("fragment=", start, end);
+    }
+
+    @Override
+    public void endURI() {
+      records.add(record.substring(1));
+    }
+
+    private void append(String label, int start, int end) {
+      record.append(' ').append(label).append(BulkURIParser.asString(source, start, end));
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+
+public class CompactURITest {
+  @Test
+  public void shouldBuildCompactURI() {
+    CompactURI got =
+        new URIBuilderTiny()
+            .setScheme("https")
+            .setHost("java.example.com")
+            .setPort(8080)
+            .setPaths("foo", "bar")
+            .addQueryParameter("hoge", "fu ga")
+            .setFragment("frag")
+            .buildCompact();
+
+    assertEquals("https://java.example.com:8080/foo/bar?hoge=fu+ga#frag", got.toString());
+    assertEquals("https", got.getScheme());
+    assertEquals("java.example.com", got.getHost());
+    assertEquals(8080, got.getPort());
+    assertEquals("/foo/bar", got.getPath());
+    assertEquals("hoge=fu+ga", got.getQuery());
+    assertEquals("frag", got.getFragment());
+    assertEquals(URI.create(got.toString()), got.toURI());
+  }
+
+  @Test
+  public void shouldAgreeWithURI() {
+    String[] uris = {
+      "",
+      "/foo/bar",
+      "example.com/foo",
+      "http://example.com",
+      "http://example.com?q=1",
+      "http://example.com#f?g",
+      "http://user@example.com:80/",
+      "http://[::1]:8080/foo?a=b",
+      "http://[::1]/",
+      "http://foo/bar",
+      "mailto:foo@example.com",
+    };
+    for (String uri : uris) {
+      CompactURI got = CompactURI.parse(uri);
+      URI expected = URI.create(uri);
+      assertEquals(expected.getScheme(), got.getScheme(), uri);
+      assertEquals(expected.getHost(), got.getHost(), uri);
+      assertEquals(expected.getPort(), got.getPort(), uri);
+      assertEquals(expected.getRawQuery(), got.getQuery(), uri);
+      assertEquals(expected.getRawFragment(), got.getFragment(), uri);
+      if (expected.getRawPath() != null) {
+        assertEquals(expected.getRawPath(), got.getPath(), uri);
+      }
+    }
+  }
+
+  @Test
+  public void shouldBeEqualByString() {
+    assertEquals(CompactURI.parse("http://example.com/"), CompactURI.parse("http://example.com/"));
+    assertEquals(
+        CompactURI.parse("http://example.com/").hashCode(),
+        CompactURI.parse("http://example.com/").hashCode());
+    assertNotEquals(
+        CompactURI.parse("http://example.com/"), CompactURI.parse("http://example.com"));
+  }
+
+  @Test
+  public void shouldRaiseExceptionWhenInvalidComponentIsGiven() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new URIBuilderTiny("http://example.com").appendRawPaths("a b").buildCompact());
+  }
+}
@@ -0,0 +1,98 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class FormBodyTest {
+  @Test
+  public void shouldBuildFormBody() throws Exception {
+    FormBody got =
+        new URIBuilderTiny()
+            .setScheme("https")
+            .setHost("example.com")
+            .addQueryParameter("name", "John Doe")
+            .addQueryParameter("city", "T\u014Dky\u014D")
+            .setFragment("frag")
+            .buildFormBody();
+
+    String expected = "city=T%C5%8Dky%C5%8D&name=John+Doe";
+    assertEquals(expected, got.toString());
+    assertEquals(expected.length(), got.getContentLength());
+    assertWritten(expected.getBytes(StandardCharsets.UTF_8), got);
+  }
+
+  @Test
+  public void shouldShareQueryStringWithURI() {
+    URIBuilderTiny builder =
+        new URIBuilderTiny().setHost("example.com").addQueryParameter("q", "a&b");
+
+    assertEquals("q=a%26b", builder.buildFormBody().toString());
+    assertEquals("q=a%26b", builder.build().getRawQuery());
+    assertEquals("", new URIBuilderTiny().buildFormBody().toString());
+  }
+
+  @Test
+  public void shouldWriteNonASCIIRawValueAsUTF8() throws Exception {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      value.append("\u00E9\u3042\uD83C\uDF63");
+    }
+    FormBody got = new URIBuilderTiny().addRawQueryParameter("k", value).buildFormBody();
+
+    byte[] expected = ("k=" + value).getBytes(StandardCharsets.UTF_8);
+    assertEquals(expected.length, got.getContentLength());
+    assertWritten(expected, got);
+  }
+
+  @Test
+  public void shouldReplaceLoneSurrogateInRawValue() throws Exception {
+    FormBody got = new URIBuilderTiny().addRawQueryParameter("k", "a\uD83Cbcdef").buildFormBody();
+
+    byte[] expected = "k=a?bcdef".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(expected.length, got.getContentLength());
+    assertWritten(expected, got);
+  }
+
+  @Test
+  public void shouldWriteLongBodyInChunks() throws Exception {
+    URIBuilderTiny builder = new URIBuilderTiny();
+    for (int i = 0; i < 3000; i++) {
+      builder.addQueryParameter("key" + i, "value " + i);
+    }
+    FormBody got = builder.buildFormBody();
+
+    assertWritten(got.toString().getBytes(StandardCharsets.US_ASCII), got);
+  }
+
+  @Test
+  public void shouldRejectShortBuffer() {
+    FormBody got = new URIBuilderTiny().addQueryParameter("foo", "bar").buildFormBody();
+
+    ByteBuffer buffer = ByteBuffer.allocate(6);
+    assertThrows(BufferOverflowException.class, () -> got.writeTo(buffer));
+    assertEquals(0, buffer.position());
+  }
+
+  private static void assertWritten(byte[] expected, FormBody got) throws Exception {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    got.writeTo(stream);
+    assertArrayEquals(expected, stream.toByteArray());
+
+    ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+    got.writeTo(Channels.newChannel(channelStream));
+    assertArrayEquals(expected, channelStream.toByteArray());
+
+    ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+    got.writeTo(buffer);
+    assertEquals(expected.length, buffer.position());
+    assertArrayEquals(expected, buffer.array());
+  }
+}
@@ -0,0 +1,96 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+public class FrontCodedURIStoreTest {
+  private static List<String> sortedURIs(int count) {
+    TreeSet<String> uris = new TreeSet<>();
+    for (int i = 0; uris.size() < count; i++) {
+      uris.add("https://example.com/base/items/" + (i * 7919 % 100003) + "?page=" + (i % 13));
+    }
+    return new ArrayList<>(uris);
+  }
+
+  @Test
+  public void shouldStoreAndIterateURIs() {
+    List<String> uris = sortedURIs(1000);
+    for (boolean offHeap : new boolean[] {false, true}) {
+      FrontCodedURIStore.Builder builder =
+          FrontCodedURIStore.builder().blockSize(4096).offHeap(offHeap);
+      for (String uri : uris) {
+        builder.add(uri);
+      }
+      FrontCodedURIStore store = builder.build();
+
+      assertEquals(uris.size(), store.size());
+      List<String> iterated = new ArrayList<>();
+      store.forEach(iterated::add);
+      assertEquals(uris, iterated);
+      for (int i = 0; i < uris.size(); i += 37) {
+        assertEquals(uris.get(i), store.get(i));
+      }
+
+      long rawSize = uris.stream().mapToLong(String::length).sum();
+      assertTrue(store.getEncodedByteSize() < rawSize / 2, "" + store.getEncodedByteSize());
+    }
+  }
+
+  @Test
+  public void shouldFindURIsByBinarySearch() {
+    List<String> uris = sortedURIs(500);
+    FrontCodedURIStore store = FrontCodedURIStore.of(uris);
+
+    for (int i = 0; i < uris.size(); i++) {
+      assertEquals(i, store.indexOf(uris.get(i)));
+      String absent = uris.get(i) + "0";
+      assertEquals(Collections.binarySearch(uris, absent), store.indexOf(absent));
+    }
+    assertEquals(-1, store.indexOf("a"));
+    assertEquals(-uris.size() - 1, store.indexOf("z"));
+    assertTrue(store.contains(uris.get(17)));
+    assertFalse(store.contains("https://example.com/"));
+  }
+
+  @Test
+  public void shouldSortAndDeduplicate() {
+    FrontCodedURIStore store =
+        FrontCodedURIStore.of(
+            Arrays.asList(
+                "http://b.example.com/", "http://a.example.com/", "http://b.example.com/"));
+    assertEquals(2, store.size());
+    assertEquals("http://a.example.com/", store.get(0));
+    assertEquals(0, FrontCodedURIStore.of(Collections.<String>emptyList()).size());
+    assertEquals(-1, FrontCodedURIStore.of(Collections.<String>emptyList()).indexOf("a"));
+  }
+
+  @Test
+  public void shouldDecodeIntoBuilder() {
+    FrontCodedURIStore store =
+        FrontCodedURIStore.builder()
+            .add(new URIBuilderTiny("https://example.com/a").addQueryParameter("q", "x y"))
+            .add(URI.create("https://example.com/b"))
+            .build();
+
+    URI got = store.getBuilder(0).appendPaths("c").build();
+    assertEquals(URI.create("https://example.com/a/c?q=x+y"), got);
+  }
+
+  @Test
+  public void shouldRejectUnsortedURIs() {
+    FrontCodedURIStore.Builder builder = FrontCodedURIStore.builder().add("b");
+    assertThrows(IllegalArgumentException.class, () -> builder.add("a"));
+    assertThrows(IllegalStateException.class, () -> builder.blockSize(10));
+    assertThrows(IndexOutOfBoundsException.class, () -> builder.build().get(1));
+  }
+}
@@ -0,0 +1,182 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class QueryParameterSchemaTest {
+  private static final QueryParameterSchema SCHEMA =
+      QueryParameterSchema.of("q", "page", "sort key");
+  private static final QueryParameterSchema.Parameter<Integer> PAGE =
+      SCHEMA.parameter("page", Integer.class);
+
+  @Test
+  public void shouldBuildInDeclaredOrder() {
+    URI got =
+        SCHEMA
+            .newBuilder("https://example.com/search")
+            .setDeclaredQueryParameter(2, "name")
+            .setDeclaredQueryParameter(PAGE, 2)
+            .setDeclaredQueryParameter(0, "foo bar")
+            .setFragment("top")
+            .build();
+
+    assertEquals(
+        URI.create("https://example.com/search?q=foo+bar&page=2&sort+key=name#top"), got);
+  }
+
+  @Test
+  public void shouldOmitSlotsWithoutValue() {
+    URIBuilderTiny builder = SCHEMA.newBuilder().setScheme("https").setHost("example.com");
+    assertEquals(URI.create("https://example.com"), builder.build());
+
+    builder.setDeclaredQueryParameter(PAGE, 1);
+    assertEquals(URI.create("https://example.com?page=1"), builder.build());
+
+    builder.setDeclaredQueryParameter(PAGE, 3);
+    assertEquals(URI.create("https://example.com?page=3"), builder.build());
+
+    builder.removeDeclaredQueryParameter(PAGE.getSlot());
+    assertEquals(URI.create("https://example.com"), builder.build());
+  }
+
+  @Test
+  public void shouldPutOtherParametersAfterDeclaredOnes() {
+    URIBuilderTiny builder =
+        SCHEMA
+            .newBuilder("https://example.com/search?z=1")
+            .addQueryParameter("a", "b")
+            .setDeclaredQueryParameter(PAGE, 5)
+            .setRawDeclaredQueryParameter(0, "%E3%81%82");
+
+    assertEquals(
+        URI.create("https://example.com/search?q=%E3%81%82&page=5&a=b&z=1"), builder.build());
+    assertEquals("q=%E3%81%82&page=5&a=b&z=1", builder.buildFormBody().toString());
+
+    Map<String, String> expected = new HashMap<>();
+    expected.put("q", "%E3%81%82");
+    expected.put("page", "5");
+    expected.put("a", "b");
+    expected.put("z", "1");
+    assertEquals(expected, builder.getQueryParameters());
+
+    // declared parameters are kept
+    builder.setQueryParameter("a", "c");
+    assertEquals(URI.create("https://example.com/search?q=%E3%81%82&page=5&a=c"), builder.build());
+  }
+
+  @Test
+  public void shouldStoreDeclaredKeysOfMapIntoSlots() {
+    URIBuilderTiny builder =
+        SCHEMA
+            .newBuilder("https://example.com/search?page=3&z=1")
+            .setDeclaredQueryParameter(0, "foo")
+            .addQueryParameter("q", "bar");
+
+    assertEquals(URI.create("https://example.com/search?q=bar&page=3&z=1"), builder.build());
+
+    Map<String, String> expected = new HashMap<>();
+    expected.put("q", "bar");
+    expected.put("page", "3");
+    expected.put("z", "1");
+    assertEquals(expected, builder.getQueryParameters());
+
+    builder.setDeclaredQueryParameter(0, "baz");
+    assertEquals(URI.create("https://example.com/search?q=baz&page=3&z=1"), builder.build());
+
+    builder.addRawQueryParameter("sort+key", "n").addQueryParameters(new HashMap<>(expected));
+    assertEquals(
+        URI.create("https://example.com/search?q=bar&page=3&sort+key=n&z=1"), builder.build());
+  }
+
+  @Test
+  public void shouldOverrideDeclaredParameterOfSequence() {
+    URISequence pages =
+        SCHEMA
+            .newBuilder("https://example.com/search")
+            .setDeclaredQueryParameter(0, "foo")
+            .setDeclaredQueryParameter(PAGE, 9)
+            .addQueryParameter("z", 1)
+            .buildSequence("page");
+
+    assertEquals(URI.create("https://example.com/search?q=foo&page=2&z=1"), pages.build(2));
+  }
+
+  @Test
+  public void shouldOverrideDeclaredParameterOfSplit() {
+    QueryParameterSchema schema = QueryParameterSchema.of("ids", "q");
+    List<URI> got =
+        schema
+            .newBuilder("http://example.com")
+            .setDeclaredQueryParameter(0, "stale")
+            .setDeclaredQueryParameter(1, "x")
+            .buildSplit("ids", Arrays.asList(1, 2, 3), 34);
+
+    assertEquals(
+        Arrays.asList(
+            URI.create("http://example.com?q=x&ids=1&ids=2"),
+            URI.create("http://example.com?q=x&ids=3")),
+        got);
+  }
+
+  @Test
+  public void shouldEncodeByCharsetOfSchema() {
+    QueryParameterSchema schema = QueryParameterSchema.of(Charset.forName("Shift_JIS"), "\u3042");
+    URI got =
+        schema.newBuilder("http://example.com").setDeclaredQueryParameter(0, "\u3044").build();
+
+    assertEquals(URI.create("http://example.com?%82%A0=%82%A2"), got);
+  }
+
+  @Test
+  public void shouldEncodeDeferredValuesOnBuilding() {
+    StringBuilder q = new StringBuilder("a");
+    URIBuilderTiny builder =
+        SCHEMA.newBuilder("http://example.com").deferEncoding(true).setDeclaredQueryParameter(0, q);
+
+    assertEquals(URI.create("http://example.com?q=a"), builder.build());
+    q.append(" b");
+    assertEquals(URI.create("http://example.com?q=a+b"), builder.build());
+  }
+
+  @Test
+  public void shouldDescribeSchema() {
+    assertEquals(3, SCHEMA.size());
+    assertEquals(Arrays.asList("q", "page", "sort key"), SCHEMA.getNames());
+    assertEquals(1, SCHEMA.slotOf("page"));
+    assertEquals("page", PAGE.getName());
+    assertEquals(SCHEMA, SCHEMA.newBuilder().getQueryParameterSchema());
+  }
+
+  @Test
+  public void shouldRejectInvalidDeclarationsAndSlots() {
+    assertThrows(IllegalArgumentException.class, () -> QueryParameterSchema.of("a", "b", "a"));
+    assertThrows(IllegalArgumentException.class, () -> SCHEMA.slotOf("limit"));
+    assertThrows(
+        IndexOutOfBoundsException.class, () -> SCHEMA.newBuilder().setDeclaredQueryParameter(3, 1));
+    assertThrows(
+        IllegalStateException.class, () -> new URIBuilderTiny().setDeclaredQueryParameter(0, 1));
+
+    QueryParameterSchema.Parameter<Integer> otherPage =
+        QueryParameterSchema.of("page").parameter("page", Integer.class);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> SCHEMA.newBuilder().setDeclaredQueryParameter(otherPage, 1));
+  }
+
+  @Test
+  public void shouldValidateDeclaredParameters() {
+    URIBuildResult result =
+        SCHEMA.newBuilder("http://example.com").setRawDeclaredQueryParameter(0, "%zz").tryBuild();
+
+    assertFalse(result.isSuccess());
+  }
+}
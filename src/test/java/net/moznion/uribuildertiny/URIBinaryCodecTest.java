@@ -0,0 +1,138 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+public class URIBinaryCodecTest {
+  private static URIBuilderTiny newBuilder() {
+    return new URIBuilderTiny()
+        .setScheme("https")
+        .setHost("www.example.com")
+        .setPort(8080)
+        .setPaths("foo", "b a r")
+        .addQueryParameter("hoge", "fu ga")
+        .addRawQueryParameter("raw", "\u3042")
+        .setFragment("frag");
+  }
+
+  @Test
+  public void shouldRoundTrip() {
+    URIBinaryCodec codec = new URIBinaryCodec();
+    URIBuilderTiny builder = newBuilder();
+
+    ByteBuffer encoded = codec.encode(builder);
+    assertEquals(codec.encodedLength(builder), encoded.remaining());
+
+    URIBuilderTiny decoded = codec.decode(encoded);
+    assertFalse(encoded.hasRemaining());
+    assertEquals(builder.build(), decoded.build());
+    assertEquals(builder.getPaths(), decoded.getPaths());
+    assertEquals(builder.getQueryParameters(), decoded.getQueryParameters());
+
+    URIBuilderTiny empty = new URIBuilderTiny().forceRemoveTrailingSlash(true);
+    ByteBuffer encodedEmpty = codec.encode(empty);
+    assertEquals(2, encodedEmpty.remaining());
+    URIBuilderTiny decodedEmpty = codec.decode(encodedEmpty);
+    assertEquals(empty.build(), decodedEmpty.build());
+    assertTrue(decodedEmpty.isForceRemoveTrailingSlash());
+  }
+
+  @Test
+  public void shouldRoundTripLoneSurrogateAsReplacement() {
+    URIBinaryCodec codec = new URIBinaryCodec();
+    URIBuilderTiny builder =
+        new URIBuilderTiny()
+            .setScheme("http")
+            .setHost("example.com")
+            .appendRawPaths("\ud800")
+            .addRawQueryParameter("k", "a\udc00b\u3042");
+
+    ByteBuffer encoded = codec.encode(builder);
+    assertEquals(codec.encodedLength(builder), encoded.remaining());
+
+    URIBuilderTiny decoded = codec.decode(encoded);
+    assertFalse(encoded.hasRemaining());
+    assertEquals(Collections.singletonList("?"), decoded.getPaths());
+    assertEquals(Collections.singletonMap("k", "a?b\u3042"), decoded.getQueryParameters());
+  }
+
+  @Test
+  public void shouldReadComponentsFromView() {
+    URIBinaryCodec codec = new URIBinaryCodec();
+    URIBinaryView view = codec.view(codec.encode(newBuilder()));
+
+    assertEquals("https", view.getScheme().toString());
+    assertEquals("www.example.com", view.getHost().toString());
+    assertEquals('w', view.getHost().charAt(0));
+    assertEquals('x', view.getHost().charAt(5));
+    assertEquals(8080, view.getPort());
+    assertEquals(2, view.getPathCount());
+    assertEquals("b+a+r", view.getPath(1).toString());
+    assertEquals(2, view.getQueryParameterCount());
+    assertEquals("hoge", view.getQueryKey(0).toString());
+    assertEquals("fu+ga", view.getQueryParameter("hoge").toString());
+    assertEquals("\u3042", view.getQueryParameter("raw").toString());
+    assertNull(view.getQueryParameter("none"));
+    assertEquals("frag", view.getFragment().toString());
+    assertThrows(IndexOutOfBoundsException.class, () -> view.getPath(2));
+  }
+
+  @Test
+  public void shouldUsePrefixDictionary() {
+    URIBuilderTiny builder =
+        new URIBuilderTiny().setScheme("https").setHost("api.internal.example.com").setPaths("v1");
+
+    URIBinaryCodec plain = new URIBinaryCodec(Arrays.asList());
+    URIBinaryCodec withDictionary =
+        new URIBinaryCodec(Arrays.asList("api.internal.", "api.internal.example.com", "https"));
+
+    assertEquals(40, plain.encodedLength(builder));
+    assertEquals(11, withDictionary.encodedLength(builder));
+
+    URIBinaryView view = withDictionary.view(withDictionary.encode(builder));
+    assertEquals("api.internal.example.com", view.getHost().toString());
+    assertEquals(builder.build(), withDictionary.decode(withDictionary.encode(builder)).build());
+    assertThrows(
+        IllegalArgumentException.class, () -> plain.decode(withDictionary.encode(builder)));
+  }
+
+  @Test
+  public void shouldWriteRecordsSequentially() {
+    URIBinaryCodec codec = new URIBinaryCodec();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+    for (int i = 0; i < 10; i++) {
+      codec.encode(newBuilder().setPort(i), buffer);
+    }
+    buffer.flip();
+
+    for (int i = 0; i < 10; i++) {
+      URIBinaryView view = codec.view(buffer);
+      assertEquals(i, view.getPort());
+      assertEquals("b+a+r", view.getPath(1).toString());
+    }
+    assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void shouldRejectShortOrMalformedBuffer() {
+    URIBinaryCodec codec = new URIBinaryCodec();
+    ByteBuffer small = ByteBuffer.allocate(10);
+    assertThrows(BufferOverflowException.class, () -> codec.encode(newBuilder(), small));
+    assertEquals(0, small.position());
+
+    ByteBuffer encoded = codec.encode(newBuilder());
+    ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(encoded.array(), 12));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(truncated));
+    assertThrows(
+        IllegalArgumentException.class, () -> codec.decode(ByteBuffer.wrap(new byte[] {9, 0})));
+  }
+}
@@ -1,8 +1,16 @@
 package net.moznion.uribuildertiny;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
 public class URIBuilderTinyProviderWithBaseTest {
@@ -37,4 +45,128 @@ public class URIBuilderTinyProviderWithBaseTest {
       assertEquals("http://example.com/bar", ubt.build().toString());
     }
   }
+
+  @Test
+  public void shouldGetBuilderWithCharset() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com", Charset.forName("EUC-JP"));
+
+    URIBuilderTiny ubt = withBase.getBuilder().addQueryParameter("q", "\u3042");
+    assertEquals(Charset.forName("EUC-JP"), ubt.getCharset());
+    assertEquals("http://example.com?q=%A4%A2", ubt.build().toString());
+  }
+
+  @Test
+  public void shouldReturnCachedURIForSameInputs() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com").withCache(100);
+    URIBuildCache cache = withBase.getCache();
+
+    URI first = withBase.build(withBase.getBuilder().appendPaths("items", 1).setFragment("a+b"));
+    URI second = withBase.build(withBase.getBuilder().appendPaths("items", 1).setFragment("a+b"));
+    URI other = withBase.build(withBase.getBuilder().appendPaths("items", 2).setFragment("a+b"));
+    URI raw = withBase.build(withBase.getBuilder().appendPaths("items", 1).setRawFragment("a+b"));
+
+    assertEquals(URI.create("http://example.com/items/1#a%2Bb"), first);
+    assertSame(first, second);
+    assertEquals(URI.create("http://example.com/items/2#a%2Bb"), other);
+    assertEquals(URI.create("http://example.com/items/1#a+b"), raw);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(0.25, cache.getHitRatio());
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void shouldDistinguishInputsOfSameShape() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com").withCache(100);
+
+    assertEquals(
+        URI.create("http://example.com:8080/a"),
+        withBase.build(withBase.getBuilder().setPort(8080).appendPaths("a")));
+    assertEquals(
+        URI.create("http://example.com:8081/a"),
+        withBase.build(withBase.getBuilder().setPort(8081).appendPaths("a")));
+    assertEquals(
+        URI.create("http://example.com/a/b"),
+        withBase.build(withBase.getBuilder().appendPaths("a", "b")));
+    assertEquals(
+        URI.create("http://example.com/ab"),
+        withBase.build(withBase.getBuilder().appendPaths("ab")));
+    assertEquals(
+        URI.create("http://example.com?a=b"),
+        withBase.build(withBase.getBuilder().addQueryParameter("a", "b")));
+    assertEquals(
+        URI.create("http://example.com#a"), withBase.build(withBase.getBuilder().setFragment("a")));
+    assertEquals(6, withBase.getCache().size());
+    assertEquals(0, withBase.getCache().getHitCount());
+  }
+
+  @Test
+  public void shouldProvideDeferredBuildersWithCache() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com").withCache(100);
+    AtomicInteger n = new AtomicInteger(1);
+    URIBuilderTiny builder = withBase.getBuilder().appendPaths("a b").addQueryParameter("n", n);
+    n.incrementAndGet();
+
+    assertTrue(builder.isDeferEncoding());
+    assertEquals(Collections.singletonList("a+b"), builder.getPaths());
+    assertEquals(Collections.singletonMap("n", "1"), builder.getQueryParameters());
+    assertEquals(URI.create("http://example.com/a+b?n=1"), withBase.build(builder));
+    assertEquals(1, withBase.getCache().size());
+  }
+
+  @Test
+  public void shouldNotCacheVolatileInputs() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com").withCache(100);
+    StringBuilder q = new StringBuilder("a");
+    URIBuilderTiny builder = withBase.getBuilder().addQueryParameter("q", q);
+
+    URI first = withBase.build(builder);
+    q.append("b");
+    URI second = withBase.build(builder);
+
+    assertEquals(URI.create("http://example.com?q=a"), first);
+    assertEquals(URI.create("http://example.com?q=ab"), second);
+    assertNotSame(first, second);
+    assertEquals(0, withBase.getCache().size());
+    assertEquals(0, withBase.getCache().getMissCount());
+  }
+
+  @Test
+  public void shouldEvictNotRecentlyUsedURI() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com").withCache(2);
+    URIBuildCache cache = withBase.getCache();
+
+    URI a = withBase.build(withBase.getBuilder().appendPaths("a"));
+    withBase.build(withBase.getBuilder().appendPaths("b"));
+    assertSame(a, withBase.build(withBase.getBuilder().appendPaths("a")));
+    withBase.build(withBase.getBuilder().appendPaths("c")); // evicts "b"
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertSame(a, withBase.build(withBase.getBuilder().appendPaths("a")));
+    withBase.build(withBase.getBuilder().appendPaths("b"));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(4, cache.getMissCount());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void shouldBuildWithoutCacheByDefault() {
+    URIBuilderTinyProviderWithBase withBase =
+        new URIBuilderTinyProviderWithBase("http://example.com");
+
+    assertNull(withBase.getCache());
+    assertEquals(
+        URI.create("http://example.com/foo"),
+        withBase.build(withBase.getBuilder().appendPaths("foo")));
+    assertThrows(IllegalArgumentException.class, () -> withBase.withCache(0));
+  }
 }
@@ -1,14 +1,26 @@
 package net.moznion.uribuildertiny;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.URI;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 public class URIBuilderTinyTest {
@@ -468,6 +480,29 @@ public class URIBuilderTinyTest {
         got.toString());
   }
 
+  @Test
+  public void shouldNormalizeHost() {
+    // "例え.テスト"
+    URI got =
+        new URIBuilderTiny().setScheme("http").setHost("\u4f8b\u3048.\u30c6\u30b9\u30c8").build();
+    assertEquals("http://xn--r8jz45g.xn--zckzah", got.toString());
+
+    got = new URIBuilderTiny().setScheme("http").setHost("Java.Example.COM/").build();
+    assertEquals("http://java.example.com/", got.toString());
+
+    got = new URIBuilderTiny().setScheme("http").setHost("h&o st.example.com").build();
+    assertEquals("http://h&o%20st.example.com", got.toString());
+  }
+
+  @Test
+  public void shouldHandleIPv6LiteralHost() {
+    URI got = new URIBuilderTiny().setScheme("http").setHost("::1").setPort(8080).build();
+    assertEquals("http://[::1]:8080", got.toString());
+
+    got = new URIBuilderTiny().setScheme("http").setHost("[FE80::1]").appendPaths("foo").build();
+    assertEquals("http://[fe80::1]/foo", got.toString());
+  }
+
   @Test
   public void testForRemovingTrailingSlash() {
     URI got =
@@ -534,6 +569,352 @@ public class URIBuilderTinyTest {
         got.toString());
   }
 
+  @Test
+  public void shouldEncodeCharSequenceAndWriterOnBuilding() {
+    StringBuilder value = new StringBuilder("a b");
+    URIBuilderTiny b =
+        new URIBuilderTiny("http://example.com")
+            .appendPaths(CharBuffer.wrap("f/oo"), (EntityWriter) sink -> sink.append(""))
+            .addQueryParameter("sb", value)
+            .addQueryParameter("w", (EntityWriter) sink -> sink.append('\ud83c').append('\udf63'))
+            .addRawQueryParameter("raw", (EntityWriter) sink -> sink.append("%41"))
+            .setFragmentFrom(sink -> sink.append("f", 0, 1).append("#"));
+
+    value.append("&c");
+    assertEquals(
+        "http://example.com/f%2Foo?raw=%41&sb=a+b%26c&w=%F0%9F%8D%A3#f%23", b.build().toString());
+    assertEquals(Arrays.asList("f%2Foo", ""), b.getPaths());
+    assertEquals("a+b%26c", b.getQueryParameters().get("sb"));
+    assertEquals("f%23", b.getFragment());
+  }
+
+  @Test
+  public void shouldReflectChangesOnRepeatedBuilding() {
+    URIBuilderTiny b =
+        new URIBuilderTiny()
+            .setScheme("http")
+            .setHost("example.com/")
+            .appendPaths("items")
+            .addQueryParameter("page", 1)
+            .setFragment("top");
+    assertEquals("http://example.com/items/?page=1#top", b.build().toString());
+    assertEquals("http://example.com/items/?page=1#top", b.build().toString());
+
+    b.addQueryParameter("page", 2);
+    assertEquals("http://example.com/items/?page=2#top", b.build().toString());
+
+    b.appendPaths("foo").setPort(8080);
+    assertEquals("http://example.com:8080/items/foo/?page=2#top", b.build().toString());
+
+    b.forceRemoveTrailingSlash(true).setQueryParameters(new HashMap<>()).setFragment("");
+    assertEquals("http://example.com:8080/items/foo", b.build().toString());
+  }
+
+  @Test
+  public void shouldNotReuseDeferredEntityOnRepeatedBuilding() {
+    StringBuilder path = new StringBuilder("foo");
+    StringBuilder value = new StringBuilder("bar");
+    URIBuilderTiny b =
+        new URIBuilderTiny("http://example.com").appendPaths(path).addQueryParameter("q", value);
+    assertEquals("http://example.com/foo?q=bar", b.build().toString());
+
+    path.append("2");
+    value.append("2");
+    assertEquals("http://example.com/foo2?q=bar2", b.build().toString());
+  }
+
+  @Test
+  public void shouldTryBuild() {
+    URIBuildResult got =
+        new URIBuilderTiny("http://example.com")
+            .appendPaths("a b")
+            .addQueryParameter("q", 1)
+            .tryBuild();
+    assertTrue(got.isSuccess());
+    assertEquals("http://example.com/a+b?q=1", got.getUri().toString());
+    assertNull(got.getErrorComponent());
+    assertEquals(-1, got.getErrorOffset());
+  }
+
+  @Test
+  public void shouldReportInvalidComponentOnTryBuild() {
+    assertFailure(
+        URIComponent.SCHEME, 1, new URIBuilderTiny().setScheme("h_ttp").setHost("example.com"));
+    assertFailure(
+        URIComponent.HOST, 1, new URIBuilderTiny().setScheme("http").setRawHost("e xample.com"));
+    assertFailure(
+        URIComponent.PATH,
+        6,
+        new URIBuilderTiny("http://example.com").appendRawPaths("foo", "b|ar"));
+    assertFailure(
+        URIComponent.PATH, 2, new URIBuilderTiny("http://example.com").appendRawPaths("a%zz"));
+    assertFailure(
+        URIComponent.QUERY,
+        7,
+        new URIBuilderTiny("http://example.com")
+            .addRawQueryParameter("a", "b")
+            .addRawQueryParameter("c", "d#e"));
+    assertFailure(
+        URIComponent.FRAGMENT, 1, new URIBuilderTiny("http://example.com").setRawFragment("f#rag"));
+    assertFailure(
+        URIComponent.HOST, 1, new URIBuilderTiny().setScheme("http").setRawHost("[1::2::3]"));
+    assertFailure(URIComponent.HOST, 0, new URIBuilderTiny().setScheme("http"));
+    assertFailure(URIComponent.PORT, 0, new URIBuilderTiny().setHost("example.com").setPort(80));
+    assertFailure(URIComponent.PORT, 0, new URIBuilderTiny().setPort(8080));
+  }
+
+  @Test
+  public void shouldRejectPortWithoutSchemeOnlyOnTryBuild() {
+    URIBuilderTiny builder = new URIBuilderTiny().setHost("example.com").setPort(80);
+
+    URI got = builder.build();
+    assertEquals("example.com", got.getScheme());
+    assertNull(got.getHost());
+    assertFailure(URIComponent.PORT, 0, builder);
+  }
+
+  @Test
+  public void shouldWriteEachValueOnceOnTryBuild() {
+    int[] count = new int[2];
+    URIBuilderTiny builder =
+        new URIBuilderTiny("http://example.com")
+            .appendPaths(
+                (EntityWriter)
+                    sink -> {
+                      count[0]++;
+                      sink.append("a b");
+                    })
+            .addRawQueryParameter(
+                "q",
+                (EntityWriter)
+                    sink -> {
+                      count[1]++;
+                      sink.append(count[1] == 1 ? "c" : "d|");
+                    });
+
+    assertEquals(URI.create("http://example.com/a+b?q=c"), builder.tryBuild().getUri());
+    assertFailure(URIComponent.QUERY, 3, builder);
+    assertArrayEquals(new int[] {2, 2}, count);
+  }
+
+  private static void assertFailure(URIComponent component, int offset, URIBuilderTiny builder) {
+    URIBuildResult got = builder.tryBuild();
+    assertFalse(got.isSuccess());
+    assertNull(got.getUri());
+    assertEquals(component, got.getErrorComponent());
+    assertEquals(offset, got.getErrorOffset());
+  }
+
+  @Test
+  public void shouldAddQueryParametersFromBean() {
+    URI got =
+        new URIBuilderTiny("http://example.com")
+            .addQueryParameter("z", "z")
+            .addQueryParameters(new Request("a b", 10, true, null))
+            .build();
+    assertEquals("http://example.com?active=true&limit=10&query=a+b&z=z", got.toString());
+
+    got =
+        new URIBuilderTiny("http://example.com").addQueryParameters(new PublicFields()).build();
+    assertEquals("http://example.com?id=1&name=foo", got.toString());
+  }
+
+  @Test
+  public void shouldEncodeWithCharset() {
+    Charset shiftJIS = Charset.forName("Shift_JIS");
+    URI got =
+        new URIBuilderTiny("http://example.com", shiftJIS)
+            .setPaths("\u691c\u7d22") // "検索"
+            .addQueryParameter("q", "\u65e5\u672c \u8a9e") // "日本 語"
+            .addQueryParameter("w", new StringBuilder("\uff71"))
+            .addQueryParameters(new Request("\u3042", 1, false, null))
+            .setFragment("\u00a5")
+            .build();
+    assertEquals(
+        "http://example.com/%8C%9F%8D%F5"
+            + "?active=false&limit=1&q=%93%FA%96%7B+%8C%EA&query=%82%A0&w=%B1#%5C",
+        got.toString());
+  }
+
+  @Test
+  public void shouldBuildSplit() {
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      ids.add(i * 7);
+    }
+    URIBuilderTiny builder =
+        new URIBuilderTiny("http://example.com/lookup")
+            .addQueryParameter("a", "x")
+            .addQueryParameter("ids", "overridden")
+            .addQueryParameter("z", "y y")
+            .setFragment("f");
+
+    List<URI> got = builder.buildSplit("ids", ids, 200);
+
+    List<String> values = new ArrayList<>();
+    for (int i = 0; i < got.size(); i++) {
+      String uri = got.get(i).toString();
+      assertTrue(uri.length() <= 200, uri);
+      assertTrue(uri.startsWith("http://example.com/lookup?a=x&ids="), uri);
+      assertTrue(uri.endsWith("&z=y+y#f"), uri);
+      String query = got.get(i).getRawQuery();
+      for (String pair : query.substring(4, query.length() - 6).split("&")) {
+        values.add(pair.substring("ids=".length()));
+      }
+      if (i + 1 < got.size()) {
+        // the first value of the next URI doesn't fit; so the number of URIs is minimal
+        String next = "&ids=" + ids.get(values.size());
+        assertTrue(uri.length() + next.length() > 200, uri);
+      }
+    }
+    assertEquals(ids.stream().map(String::valueOf).collect(Collectors.toList()), values);
+
+    assertEquals(
+        Arrays.asList(
+            URI.create("http://example.com?k=a+b&k=c"), URI.create("http://example.com?k=d")),
+        new URIBuilderTiny("http://example.com")
+            .buildSplit("k", Arrays.asList("a b", "c", "d"), 28));
+    assertTrue(new URIBuilderTiny().buildSplit("k", Arrays.asList(), 10).isEmpty());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new URIBuilderTiny("http://example.com").buildSplit("k", Arrays.asList("long"), 20));
+  }
+
+  @Test
+  public void shouldAppendQueryParametersToURIString() {
+    Map<String, Object> utm = new LinkedHashMap<>();
+    utm.put("utm_source", "news letter");
+    utm.put("utm_medium", new StringBuilder("e&mail"));
+    utm.put("id", 1);
+
+    assertEquals(
+        "https://example.com/a//b?z=1&a=2&utm_source=news+letter&utm_medium=e%26mail&id=1#top?x",
+        URIBuilderTiny.appendQueryParameters("https://example.com/a//b?z=1&a=2#top?x", utm));
+    assertEquals(
+        "https://example.com?utm_source=news+letter&utm_medium=e%26mail&id=1",
+        URIBuilderTiny.appendQueryParameters("https://example.com", utm));
+    assertEquals(
+        "/cb?k=v#",
+        URIBuilderTiny.appendQueryParameters("/cb?#", Collections.singletonMap("k", "v")));
+    assertEquals("/cb?a=1&k=v", URIBuilderTiny.appendQueryParameter("/cb?a=1&", "k", "v"));
+    assertEquals(
+        "/cb?q=%82%A0",
+        URIBuilderTiny.appendQueryParameters(
+            "/cb", Collections.singletonMap("q", "\u3042"), Charset.forName("Shift_JIS")));
+
+    String uriString = "https://example.com?a=1";
+    assertSame(uriString, URIBuilderTiny.appendQueryParameters(uriString, Collections.emptyMap()));
+
+    assertEquals(
+        "/cb?k=%5Ba%2C+b%5D",
+        URIBuilderTiny.appendQueryParameters(
+            "/cb", Collections.singletonMap("k", Arrays.asList("a", "b"))));
+    NullPointerException e =
+        assertThrows(
+            NullPointerException.class,
+            () -> URIBuilderTiny.appendQueryParameters("/cb", Collections.singletonMap("k", null)));
+    assertEquals("Value of query parameter \"k\" is null", e.getMessage());
+  }
+
+  @Test
+  public void shouldBuildSequence() {
+    URIBuilderTiny builder =
+        new URIBuilderTiny("http://example.com/items")
+            .addQueryParameter("limit", 50)
+            .addQueryParameter("offset", "overridden")
+            .addQueryParameter("q", "a b")
+            .setFragment("f");
+    URISequence sequence = builder.buildSequence("offset");
+
+    assertEquals(
+        Arrays.asList(
+            URI.create("http://example.com/items?limit=50&offset=0&q=a+b#f"),
+            URI.create("http://example.com/items?limit=50&offset=50&q=a+b#f"),
+            URI.create("http://example.com/items?limit=50&offset=100&q=a+b#f")),
+        sequence.stream(0, 120, 50).collect(Collectors.toList()));
+    for (long i = 0; i < 120; i += 50) {
+      assertEquals(builder.addQueryParameter("offset", i).build(), sequence.build(i));
+    }
+    assertEquals(
+        URI.create("http://example.com/items?limit=50&offset=x%26y&q=a+b#f"),
+        sequence.build("x&y"));
+
+    URISequence pages = new URIBuilderTiny("http://example.com").buildSequence("page");
+    assertEquals(
+        Arrays.asList("http://example.com?page=1", "http://example.com?page=2"),
+        pages.strings(1, 3, 1).collect(Collectors.toList()));
+    assertEquals(URI.create("http://example.com?page=1"), pages.iterator(1, 10, 1).next());
+    assertEquals(0, pages.stream(5, 5).count());
+    assertThrows(IllegalArgumentException.class, () -> pages.stream(0, 10, 0));
+  }
+
+  @Test
+  public void shouldBuildSameURIInDeferredEncodingMode() {
+    Map<String, Object> queryParameters = new HashMap<>();
+    queryParameters.put("a b", "c d");
+    queryParameters.put("e", 1);
+
+    for (boolean shouldDefer : new boolean[] {false, true}) {
+      URIBuilderTiny builder =
+          new URIBuilderTiny("http://example.com")
+              .deferEncoding(shouldDefer)
+              .setPaths("f o", 2)
+              .appendPathsByString("g/h i")
+              .appendRawPaths("%20")
+              .addQueryParameters(queryParameters)
+              .addQueryParameter("j", "\u3042")
+              .addRawQueryParameter("k", "l+m")
+              .addQueryParameters(new Request("n", 3, true, null))
+              .setFragment("o p");
+      assertEquals(shouldDefer, builder.isDeferEncoding());
+      assertEquals(
+          "http://example.com/f+o/2/g/h+i/%20"
+              + "?a+b=c+d&active=true&e=1&j=%E3%81%82&k=l+m&limit=3&query=n#o+p",
+          builder.build().toString());
+      assertEquals(Arrays.asList("f+o", "2", "g", "h+i", "%20"), builder.getPaths());
+    }
+  }
+
+  @Test
+  public void shouldEncodeOnlyOnceOnBuildingInDeferredEncodingMode() {
+    CountingValue overwritten = new CountingValue("x");
+    CountingValue value = new CountingValue("y z");
+    URIBuilderTiny builder =
+        new URIBuilderTiny("http://example.com")
+            .deferEncoding(true)
+            .addQueryParameter("q", overwritten)
+            .addQueryParameter("q", value);
+    // stringified on setting as the default mode, but not encoded yet
+    assertEquals(1, overwritten.count);
+    assertEquals(1, value.count);
+
+    assertEquals("http://example.com?q=y+z", builder.build().toString());
+    assertEquals("http://example.com?q=y+z", builder.build().toString());
+    assertEquals(1, overwritten.count);
+    assertEquals(1, value.count);
+
+    URIBuilderTiny eager =
+        new URIBuilderTiny("http://example.com").addQueryParameter("q", overwritten);
+    eager.addQueryParameter("q", value);
+    assertEquals(2, overwritten.count);
+  }
+
+  @Test
+  public void shouldTakeStringFormOfMutableObjectOnSettingInDeferredEncodingMode() {
+    for (boolean shouldDefer : new boolean[] {false, true}) {
+      AtomicInteger n = new AtomicInteger(1);
+      URIBuilderTiny builder =
+          new URIBuilderTiny("http://example.com")
+              .deferEncoding(shouldDefer)
+              .addQueryParameter("n", n);
+      assertEquals("http://example.com?n=1", builder.build().toString());
+
+      n.incrementAndGet();
+      builder.addQueryParameter("o", "p");
+      assertEquals("http://example.com?n=1&o=p", builder.build().toString());
+    }
+  }
+
   @Test
   public void allowConsecutiveSlashAtQueryParameter() throws Exception {
     URI got =
@@ -545,6 +926,57 @@ public class URIBuilderTinyTest {
     assertEquals("http://example.com?url=https%3A%2F%2Fexample.com", got.toString());
   }
 
+  private static class CountingValue {
+    private final String value;
+    private int count;
+
+    CountingValue(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String toString() {
+      count++;
+      return value;
+    }
+  }
+
+  private static class Request {
+    private final String query;
+    private final int limit;
+    private final boolean active;
+    private final String cursor;
+
+    Request(String query, int limit, boolean active, String cursor) {
+      this.query = query;
+      this.limit = limit;
+      this.active = active;
+      this.cursor = cursor;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    public int getLimit() {
+      return limit;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public String getCursor() {
+      return cursor;
+    }
+  }
+
+  public static class PublicFields {
+    public static final String IGNORED = "ignored";
+    public final int id = 1;
+    public final String name = "foo";
+  }
+
   private static class Foo {
     private String foo;
 
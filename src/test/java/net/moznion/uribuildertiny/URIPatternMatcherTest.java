@@ -0,0 +1,116 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+
+public class URIPatternMatcherTest {
+  private final URIPatternMatcher matcher =
+      URIPatternMatcher.compile(
+          "/users/{id}",
+          "/users/me",
+          "/users/{id}/orders/{orderId}",
+          "/users/me/orders/recent",
+          "/items",
+          "/");
+
+  @Test
+  public void shouldMatchPatterns() {
+    URIMatch got = matcher.match("/users/12/orders/345");
+    assertEquals("/users/{id}/orders/{orderId}", got.getPattern());
+    assertEquals(2, got.getPatternIndex());
+    assertEquals(2, got.getVariableCount());
+    assertEquals("id", got.getVariableName(0));
+    assertEquals(7, got.getVariableStart(0));
+    assertEquals(9, got.getVariableEnd(0));
+    assertEquals("12", got.getVariable("id"));
+    assertEquals("345", got.getVariable("orderId"));
+    assertNull(got.getVariable("unknown"));
+
+    assertEquals("/users/me", matcher.match("/users/me").getPattern());
+    assertEquals("/users/{id}", matcher.match("users//1/").getPattern());
+    assertEquals("/items", matcher.match("/items?page=2").getPattern());
+    assertEquals("/", matcher.match("").getPattern());
+    assertNull(matcher.match("/users"));
+    assertNull(matcher.match("/users/1/orders"));
+    assertNull(matcher.match("/unknown/path"));
+  }
+
+  @Test
+  public void shouldFallBackToVariableWhenLiteralDoesNotMatchRest() {
+    URIMatch got = matcher.match("/users/me/orders/9");
+    assertEquals("/users/{id}/orders/{orderId}", got.getPattern());
+    assertEquals("me", got.getVariable("id"));
+
+    assertEquals("/users/me/orders/recent", matcher.match("/users/me/orders/recent").getPattern());
+  }
+
+  @Test
+  public void shouldDecodeOnlyWhenRequested() {
+    URIMatch got = matcher.match("/users/a%20b+c%E3%81%82/orders/%zz?q=x+y%26z&flag&q=2#top");
+    assertEquals("a%20b+c%E3%81%82", got.getRawVariable("id"));
+    assertEquals("a b+c\u3042", got.getVariable("id"));
+    assertEquals("%zz", got.getVariable("orderId"));
+
+    assertEquals("q=x+y%26z&flag&q=2", got.getRawQuery());
+    assertEquals("x+y%26z", got.getRawQueryParameter("q"));
+    assertEquals("x y&z", got.getQueryParameter("q"));
+    assertEquals("", got.getQueryParameter("flag"));
+    assertNull(got.getQueryParameter("fla"));
+    assertNull(matcher.match("/items#a?b=c").getRawQueryParameter("b"));
+  }
+
+  @Test
+  public void shouldFeedBuilder() {
+    URIMatch got = matcher.match("/users/a%2Fb/orders/7?q=x+y#top");
+
+    assertEquals(
+        URI.create("https://example.com/users/a%2Fb/orders/7?q=x+y#top"),
+        got.toBuilder().setScheme("https").setHost("example.com").build());
+    assertEquals(
+        URI.create("https://api.example.com/v2/orders/7/owner/a%2Fb?page=1&q=x+y#top"),
+        got.rewrite("/v2/orders/{orderId}/owner/{id}")
+            .setScheme("https")
+            .setHost("api.example.com")
+            .addQueryParameter("page", 1)
+            .build());
+    assertThrows(IllegalArgumentException.class, () -> got.rewrite("/{unknown}"));
+  }
+
+  @Test
+  public void shouldSortAndDeduplicateQueryOnFeedingBuilder() {
+    URIMatch got = matcher.match("/users/1/orders/2?z=1&a=1&flag&a=2");
+
+    assertEquals("z=1&a=1&flag&a=2", got.getRawQuery());
+    assertEquals(URI.create("/users/1/orders/2?a=2&flag=&z=1"), got.toBuilder().build());
+    assertEquals(
+        URI.create("/v2/orders/2?a=2&flag=&z=1"), got.rewrite("/v2/orders/{orderId}").build());
+  }
+
+  @Test
+  public void shouldMatchManyPatterns() {
+    String[] patterns = new String[500];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = "/api/v" + (i % 5) + "/resource" + i + "/{id}";
+    }
+    URIPatternMatcher many = URIPatternMatcher.compile(patterns);
+
+    for (int i = 0; i < patterns.length; i++) {
+      URIMatch got = many.match("/api/v" + (i % 5) + "/resource" + i + "/x" + i);
+      assertEquals(i, got.getPatternIndex());
+      assertEquals("x" + i, got.getVariable("id"));
+    }
+  }
+
+  @Test
+  public void shouldRejectMalformedPatterns() {
+    assertThrows(IllegalArgumentException.class, () -> URIPatternMatcher.compile("/a/b{id}"));
+    assertThrows(IllegalArgumentException.class, () -> URIPatternMatcher.compile("/a/{}"));
+    assertThrows(IllegalArgumentException.class, () -> URIPatternMatcher.compile("/{a}/{a}"));
+    assertThrows(
+        IllegalArgumentException.class, () -> URIPatternMatcher.compile("/a/{x}", "/a/{y}"));
+  }
+}
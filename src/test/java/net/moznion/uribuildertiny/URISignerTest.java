@@ -0,0 +1,92 @@
+package net.moznion.uribuildertiny;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+
+public class URISignerTest {
+  private static final byte[] KEY = "secret".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void shouldBuildSignedURI() throws Exception {
+    URISigner signer = new URISigner("HmacSHA256", KEY);
+    URI got =
+        new URIBuilderTiny("https://cdn.example.com/assets/a.png")
+            .addQueryParameter("w", 100)
+            .addQueryParameter("a", "b")
+            .setFragment("frag")
+            .buildSigned(signer, 1700000000L);
+
+    String canonical = "https://cdn.example.com/assets/a.png?a=b&expires=1700000000&w=100";
+    assertEquals(canonical + "&signature=" + hmac(canonical) + "#frag", got.toString());
+  }
+
+  @Test
+  public void shouldOverrideExpiresParameterOfBuilder() throws Exception {
+    URISigner signer = new URISigner("HmacSHA256", KEY, "e", "s");
+    URI got =
+        new URIBuilderTiny("https://cdn.example.com/a.png?e=1")
+            .addQueryParameter("z", "z")
+            .buildSigned(signer, 2L);
+
+    String canonical = "https://cdn.example.com/a.png?e=2&z=z";
+    assertEquals(canonical + "&s=" + hmac(canonical), got.toString());
+  }
+
+  @Test
+  public void shouldExcludeStoredSignatureParameter() throws Exception {
+    URI got =
+        new URIBuilderTiny("https://cdn.example.com/a.png")
+            .addQueryParameter("signature", "evil")
+            .addQueryParameter("expires", "0")
+            .addQueryParameter("w", 1)
+            .buildSigned(new URISigner("HmacSHA256", KEY), 1L);
+
+    String canonical = "https://cdn.example.com/a.png?expires=1&w=1";
+    assertEquals(canonical + "&signature=" + hmac(canonical), got.toString());
+  }
+
+  @Test
+  public void shouldSortDeclaredParametersIntoCanonicalForm() throws Exception {
+    QueryParameterSchema schema = QueryParameterSchema.of("q", "page");
+    URI got =
+        schema
+            .newBuilder("https://cdn.example.com/a.png")
+            .setDeclaredQueryParameter(0, "z")
+            .setDeclaredQueryParameter(1, 2)
+            .addQueryParameter("a", "b")
+            .buildSigned(new URISigner("HmacSHA256", KEY), 1L);
+
+    String canonical = "https://cdn.example.com/a.png?a=b&expires=1&page=2&q=z";
+    assertEquals(canonical + "&signature=" + hmac(canonical), got.toString());
+  }
+
+  @Test
+  public void shouldSignEvenIfNoQueryParameters() throws Exception {
+    URI got =
+        new URIBuilderTiny("https://cdn.example.com/a.png")
+            .buildSigned(new URISigner("HmacSHA256", KEY), 10L);
+
+    String canonical = "https://cdn.example.com/a.png?expires=10";
+    assertEquals(canonical + "&signature=" + hmac(canonical), got.toString());
+  }
+
+  @Test
+  public void shouldRaiseExceptionWhenInvalidAlgorithmIsGiven() {
+    assertThrows(IllegalArgumentException.class, () -> new URISigner("InvalidMac", KEY));
+  }
+
+  private static String hmac(String canonical) throws Exception {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(KEY, "HmacSHA256"));
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+  }
+}
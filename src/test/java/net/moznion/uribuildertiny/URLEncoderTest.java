@@ -1,10 +1,12 @@
 package net.moznion.uribuildertiny;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 
 public class URLEncoderTest {
@@ -19,6 +21,88 @@ public class URLEncoderTest {
                 .encode("foo"));
   }
 
+  @Test
+  public void shouldEncodeSameAsJavaNetURLEncoder() throws Exception {
+    URLEncoder urlEncoder = new URLEncoder(new ConcreteEntityURLEncoder(StandardCharsets.UTF_8));
+    String[] inputs = {
+      "",
+      "abcXYZ019.-*_",
+      "a b+c&d=e/f?g#h%i~j",
+      "\u3042\u3044\u3046", // "あいう"
+      "\u00e9\u07ff\u0800\uffff",
+      "\ud83c\udf63", // surrogate pair
+      "\ud83c", // lone high surrogate
+      "x\udf63y", // lone low surrogate
+    };
+    for (String input : inputs) {
+      assertEquals(java.net.URLEncoder.encode(input, "UTF-8"), urlEncoder.encode(input));
+    }
+  }
+
+  @Test
+  public void shouldEncodeLongValueSameAsJavaNetURLEncoder() throws Exception {
+    URLEncoder urlEncoder = new URLEncoder(new ConcreteEntityURLEncoder(StandardCharsets.UTF_8));
+    String clean = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.-*_";
+    String[] specials = {" ", "/", "+", "@", "`", "[", "{", "\u007f", "\u00e9", "\u3042"};
+    for (String special : specials) {
+      for (int i = 0; i <= 24; i++) {
+        String input = clean.substring(0, i) + special + clean.substring(i) + special + special;
+        assertEquals(java.net.URLEncoder.encode(input, "UTF-8"), urlEncoder.encode(input));
+      }
+    }
+
+    for (char c = 0; c < 256; c++) {
+      String input = clean + c + clean;
+      assertEquals(java.net.URLEncoder.encode(input, "UTF-8"), urlEncoder.encode(input));
+    }
+  }
+
+  @Test
+  public void shouldEncodeCharSequenceOnSinkSameAsJavaNetURLEncoder() throws Exception {
+    String clean = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.-*_";
+    for (int i = 0; i < 4; i++) {
+      // every character, at each lane of a word
+      for (int c = 0; c <= Character.MAX_VALUE; c++) {
+        String input = clean.substring(0, i) + (char) c + clean;
+        StringBuilder got = new StringBuilder();
+        new UTF8PercentEncodingSink(got).append(new StringBuilder(input)).finish();
+        assertEquals(java.net.URLEncoder.encode(input, "UTF-8"), got.toString());
+      }
+    }
+  }
+
+  @Test
+  public void shouldEncodeOtherCharsetsSameAsJavaNetURLEncoder() throws Exception {
+    StringBuilder longRun = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      longRun.append('\u3042');
+    }
+    String[] inputs = {
+      "abcXYZ019.-*_",
+      "a b+c&d=e/f?g#h%i~j",
+      "\u65e5\u672c\u8a9e \u30c6\u30b9\u30c8", // "日本語 テスト"
+      "\uff71\uff72\u00a5\u203e\\~", // half-width katakana, yen, overline
+      "\u00e9\u4e02\ud83c\udf63", // unmappable in Shift_JIS
+      "\ud83c", // lone high surrogate
+      "x\udf63y", // lone low surrogate
+      longRun.toString(),
+    };
+    for (String charsetName : new String[] {"Shift_JIS", "EUC-JP", "ISO-8859-1", "UTF-16"}) {
+      URLEncoder urlEncoder =
+          new URLEncoder(new ConcreteEntityURLEncoder(Charset.forName(charsetName)));
+      for (String input : inputs) {
+        assertEquals(
+            java.net.URLEncoder.encode(input, charsetName),
+            urlEncoder.encode(input),
+            charsetName + ": " + input);
+        assertEquals(
+            java.net.URLEncoder.encode(input, charsetName),
+            urlEncoder.encode(new StringBuilder(input)),
+            charsetName + ": " + input);
+      }
+    }
+  }
+
   private static class InvalidCharset extends Charset {
     /**
      * Initializes a new charset with the given canonical name and alias set.